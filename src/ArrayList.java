@@ -0,0 +1,290 @@
+/*
+ * ArrayList.java
+ *
+ * Computer Science E-22, Harvard University
+ */
+
+import java.util.*;
+
+/**
+ * A class that implements our simple List interface using an array
+ * that grows as needed.  Unlike LLList, getItem() takes constant time,
+ * so loops of the form "for (i...) getItem(i)" are O(n) overall.
+ *
+ * Adding at the end of the list takes amortized constant time, because
+ * the array doubles in size whenever it runs out of room.  Adding or
+ * removing anywhere else shifts the items that follow the position.
+ */
+public class ArrayList implements List {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private Object[] items;    // the items; items[length..] are unused
+    private int length;        // # of items in the list
+    private int modCount;      // # of structural changes, for iterators
+
+    /**
+     * Constructs an ArrayList object for a list that is initially empty.
+     */
+    public ArrayList() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs an ArrayList object for a list that is initially empty
+     * and that can hold the specified number of items before it needs
+     * to grow.
+     */
+    public ArrayList(int initialCapacity) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("negative capacity: "
+                                               + initialCapacity);
+        items = new Object[Math.max(initialCapacity, 1)];
+        length = 0;
+    }
+
+    /*
+     * ensureCapacity - private helper method that makes sure the array
+     * can hold at least minCapacity items, doubling its size if needed.
+     */
+    private void ensureCapacity(int minCapacity) {
+        if (minCapacity <= items.length)
+            return;
+
+        int newCapacity = items.length * 2;
+        if (newCapacity < minCapacity)
+            newCapacity = minCapacity;
+        items = Arrays.copyOf(items, newCapacity);
+    }
+
+    /** getItem - returns the item at position i in the list */
+    public Object getItem(int i) {
+        if (i < 0 || i >= length)
+            throw new IndexOutOfBoundsException();
+        return items[i];
+    }
+
+    /**
+     * addItem - adds the specified item at position i in the list,
+     * shifting the items that are currently in positions i, i+1, i+2,
+     * etc. to the right by one.  Always returns true, because the array
+     * is enlarged whenever it fills up.
+     */
+    public boolean addItem(Object item, int i) {
+        if (i < 0 || i > length)
+            throw new IndexOutOfBoundsException();
+
+        ensureCapacity(length + 1);
+        System.arraycopy(items, i, items, i + 1, length - i);
+        items[i] = item;
+
+        length++;
+        modCount++;
+        return true;
+    }
+
+    /**
+     * removeItem - removes the item at position i in the list,
+     * shifting the items that are currently in positions i+1, i+2,
+     * etc. to the left by one.  Returns a reference to the removed
+     * object.
+     */
+    public Object removeItem(int i) {
+        if (i < 0 || i >= length)
+            throw new IndexOutOfBoundsException();
+
+        Object removed = items[i];
+        System.arraycopy(items, i + 1, items, i, length - i - 1);
+        items[length - 1] = null;    // let the garbage collector reclaim it
+
+        length--;
+        modCount++;
+        return removed;
+    }
+
+    /**
+     * insertAll - adds the items in the specified array at positions
+     * at, at+1, ... in the list, shifting the items that follow them
+     * only once.  Always returns true.
+     */
+    public boolean insertAll(Object[] newItems, int at) {
+        if (at < 0 || at > length)
+            throw new IndexOutOfBoundsException();
+
+        int count = newItems.length;
+        ensureCapacity(length + count);
+        System.arraycopy(items, at, items, at + count, length - at);
+        System.arraycopy(newItems, 0, items, at, count);
+
+        length += count;
+        modCount++;
+        return true;
+    }
+
+    /**
+     * removeRange - removes the items in positions from, from+1, ...,
+     * to-1 in the list, shifting the items that follow them only once.
+     */
+    public void removeRange(int from, int to) {
+        if (from < 0 || to > length || from > to)
+            throw new IndexOutOfBoundsException();
+
+        System.arraycopy(items, to, items, from, length - to);
+        int newLength = length - (to - from);
+        Arrays.fill(items, newLength, length, null);
+
+        length = newLength;
+        modCount++;
+    }
+
+    /** length - returns the number of items in the list */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * isFull - always returns false, because the array is enlarged
+     * whenever it fills up.
+     */
+    public boolean isFull() {
+        return false;
+    }
+
+    /**
+     * toString - converts the list into a String of the form
+     * {item0, item1, ...}
+     */
+    public String toString() {
+        StringBuilder str = new StringBuilder("{");
+
+        for (int i = 0; i < length; i++) {
+            str.append(items[i]);
+            if (i < length - 1)
+                str.append(", ");
+        }
+
+        str.append("}");
+        return str.toString();
+    }
+
+    /**
+     * iterator - returns an iterator for this list
+     */
+    public ListIterator<Object> iterator() {
+        return new ArrayListIterator();
+    }
+
+    /*
+     *** private inner class for an iterator over an ArrayList ***
+     */
+    private class ArrayListIterator implements ListIterator<Object> {
+        private int nextIndex;          // index of the next item to visit
+        private int lastVisited;        // index of the most recently
+                                        // visited item, or -1 if none
+        private int expectedModCount;
+
+        public ArrayListIterator() {
+            nextIndex = 0;
+            lastVisited = -1;
+            expectedModCount = modCount;
+        }
+
+        /*
+         * checkForComodification - throws an exception if the list was
+         * structurally modified other than through this iterator.
+         */
+        private void checkForComodification() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+        }
+
+        /**
+         * hasNext - does the iterator have additional items to visit?
+         */
+        public boolean hasNext() {
+            return (nextIndex < length);
+        }
+
+        /**
+         * next - returns a reference to the next Object in the iteration
+         */
+        public Object next() {
+            checkForComodification();
+            if (nextIndex >= length)
+                throw new NoSuchElementException();
+
+            lastVisited = nextIndex;
+            nextIndex++;
+            return items[lastVisited];
+        }
+
+        /**
+         * hasPrevious - does the iterator have items before the cursor?
+         */
+        public boolean hasPrevious() {
+            return (nextIndex > 0);
+        }
+
+        /**
+         * previous - returns a reference to the previous Object in the
+         * iteration and moves the cursor back by one
+         */
+        public Object previous() {
+            checkForComodification();
+            if (nextIndex <= 0)
+                throw new NoSuchElementException();
+
+            nextIndex--;
+            lastVisited = nextIndex;
+            return items[lastVisited];
+        }
+
+        public int nextIndex() {
+            return nextIndex;
+        }
+
+        public int previousIndex() {
+            return nextIndex - 1;
+        }
+
+        /**
+         * remove - removes the item most recently returned by next()
+         * or previous()
+         */
+        public void remove() {
+            if (lastVisited < 0)
+                throw new IllegalStateException();
+            checkForComodification();
+
+            removeItem(lastVisited);
+            if (lastVisited < nextIndex)
+                nextIndex--;
+            lastVisited = -1;
+            expectedModCount = modCount;
+        }
+
+        /**
+         * set - replaces the item most recently returned by next()
+         * or previous()
+         */
+        public void set(Object item) {
+            if (lastVisited < 0)
+                throw new IllegalStateException();
+            checkForComodification();
+
+            items[lastVisited] = item;
+        }
+
+        /**
+         * add - inserts the specified item immediately before the
+         * cursor
+         */
+        public void add(Object item) {
+            checkForComodification();
+
+            addItem(item, nextIndex);
+            nextIndex++;
+            lastVisited = -1;
+            expectedModCount = modCount;
+        }
+    }
+}
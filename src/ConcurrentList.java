@@ -0,0 +1,496 @@
+/*
+ * ConcurrentList.java
+ *
+ * Computer Science E-22, Harvard University
+ */
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A class that implements our simple List interface using a linked list
+ * that many threads can read and modify at the same time.
+ *
+ * Each node has its own lock, and the positional methods walk the list
+ * using "hand-over-hand" locking: a thread locks the next node before
+ * unlocking the current one.  Because the locks are always taken in list
+ * order, threads cannot deadlock, and a thread only blocks the part of
+ * the list it is currently passing through.  In particular, adding at
+ * the front of the list holds only the lock on the dummy head node, and
+ * only for the time it takes to link in the new node.
+ *
+ * Because other threads may be changing the list, an index that was
+ * valid when length() was called may no longer be valid when it is
+ * used; in that case the method throws an IndexOutOfBoundsException.
+ *
+ * Iterators are weakly consistent: they never throw a
+ * ConcurrentModificationException, they return each item at most once
+ * while moving in one direction, and they reflect some (but not
+ * necessarily all) of the changes made after they were created.  They
+ * support the whole ListIterator interface; see the iterator class for
+ * the cost of moving backward.
+ */
+public class ConcurrentList implements List {
+    // Inner class for a node.  The links are volatile so that iterators
+    // can follow them without taking any locks.
+    private class Node {
+        private volatile Object item;
+        private volatile Node next;
+        private volatile boolean removed;
+        private final ReentrantLock lock;
+
+        private Node(Object i, Node n) {
+            item = i;
+            next = n;
+            removed = false;
+            lock = new ReentrantLock();
+        }
+    }
+
+    private final Node head;              // dummy head node
+    private final AtomicInteger length;   // # of items in the list
+
+    /**
+     * Constructs a ConcurrentList object for a list that is initially
+     * empty.
+     */
+    public ConcurrentList() {
+        head = new Node(null, null);
+        length = new AtomicInteger(0);
+    }
+
+    /*
+     * lockNode - private helper method that walks to the ith node using
+     * hand-over-hand locking and returns it while it is still locked.
+     * The caller must unlock it.  If i == -1, it locks and returns the
+     * dummy head node.  If the list is too short, it releases its lock
+     * and throws an IndexOutOfBoundsException.
+     */
+    private Node lockNode(int i) {
+        Node trav = head;
+        trav.lock.lock();
+        for (int travIndex = -1; travIndex < i; travIndex++) {
+            Node next = trav.next;
+            if (next == null) {
+                trav.lock.unlock();
+                throw new IndexOutOfBoundsException();
+            }
+            next.lock.lock();
+            trav.lock.unlock();
+            trav = next;
+        }
+        return trav;
+    }
+
+    /** getItem - returns the item at position i in the list */
+    public Object getItem(int i) {
+        if (i < 0)
+            throw new IndexOutOfBoundsException();
+
+        Node n = lockNode(i);
+        try {
+            return n.item;
+        } finally {
+            n.lock.unlock();
+        }
+    }
+
+    /**
+     * addItem - adds the specified item at position i in the list,
+     * shifting the items that are currently in positions i, i+1, i+2,
+     * etc. to the right by one.  Always returns true, because the list
+     * is never full.
+     */
+    public boolean addItem(Object item, int i) {
+        if (i < 0)
+            throw new IndexOutOfBoundsException();
+
+        Node prevNode = lockNode(i - 1);
+        try {
+            prevNode.next = new Node(item, prevNode.next);
+            length.incrementAndGet();
+        } finally {
+            prevNode.lock.unlock();
+        }
+        return true;
+    }
+
+    /**
+     * removeItem - removes the item at position i in the list,
+     * shifting the items that are currently in positions i+1, i+2,
+     * etc. to the left by one.  Returns a reference to the removed
+     * object.
+     *
+     * The removed node keeps its next link, so that an iterator that
+     * is currently on that node can still find the rest of the list.
+     */
+    public Object removeItem(int i) {
+        if (i < 0)
+            throw new IndexOutOfBoundsException();
+
+        Node prevNode = lockNode(i - 1);
+        try {
+            Node removedNode = prevNode.next;
+            if (removedNode == null)
+                throw new IndexOutOfBoundsException();
+
+            removedNode.lock.lock();
+            try {
+                prevNode.next = removedNode.next;
+                removedNode.removed = true;
+                length.decrementAndGet();
+                return removedNode.item;
+            } finally {
+                removedNode.lock.unlock();
+            }
+        } finally {
+            prevNode.lock.unlock();
+        }
+    }
+
+    /**
+     * insertAll - adds the items in the specified array at positions
+     * at, at+1, ... in the list.  The new nodes are linked together
+     * first and then spliced in while node at - 1 is locked, so other
+     * threads see either none or all of the new items.
+     */
+    public boolean insertAll(Object[] items, int at) {
+        if (at < 0)
+            throw new IndexOutOfBoundsException();
+        if (items.length == 0)
+            return true;
+
+        Node first = new Node(items[0], null);
+        Node last = first;
+        for (int k = 1; k < items.length; k++) {
+            last.next = new Node(items[k], null);
+            last = last.next;
+        }
+
+        Node prevNode = lockNode(at - 1);
+        try {
+            last.next = prevNode.next;
+            prevNode.next = first;
+            length.addAndGet(items.length);
+        } finally {
+            prevNode.lock.unlock();
+        }
+        return true;
+    }
+
+    /**
+     * removeRange - removes the items in positions from, from+1, ...,
+     * to-1 in the list.  Node from - 1 stays locked while the nodes in
+     * the range are visited hand-over-hand, and the whole run is then
+     * unlinked at once.
+     */
+    public void removeRange(int from, int to) {
+        if (from < 0 || from > to)
+            throw new IndexOutOfBoundsException();
+        if (from == to)
+            return;
+
+        Node prevNode = lockNode(from - 1);
+        try {
+            Node first = prevNode.next;
+            Node trav = prevNode;
+            for (int k = from; k < to; k++) {
+                Node next = trav.next;
+                if (next == null) {
+                    if (trav != prevNode)
+                        trav.lock.unlock();
+                    throw new IndexOutOfBoundsException();
+                }
+                next.lock.lock();
+                if (trav != prevNode)
+                    trav.lock.unlock();
+                trav = next;
+            }
+
+            prevNode.next = trav.next;
+            trav.lock.unlock();
+            for (Node n = first; n != prevNode.next; n = n.next)
+                n.removed = true;
+            length.addAndGet(-(to - from));
+        } finally {
+            prevNode.lock.unlock();
+        }
+    }
+
+    /** length - returns the number of items in the list */
+    public int length() {
+        return length.get();
+    }
+
+    /**
+     * isFull - always returns false, because the linked list can
+     * grow indefinitely and thus the list is never full.
+     */
+    public boolean isFull() {
+        return false;
+    }
+
+    /**
+     * toString - converts the list into a String of the form
+     * {item0, item1, ...}.  Like an iterator, it is weakly consistent.
+     */
+    public String toString() {
+        StringBuilder str = new StringBuilder("{");
+
+        Node trav = head.next;    // skip over the dummy head node
+        while (trav != null) {
+            str.append(trav.item);
+            trav = trav.next;
+            if (trav != null)
+                str.append(", ");
+        }
+
+        str.append("}");
+        return str.toString();
+    }
+
+    /**
+     * iterator - returns a weakly consistent iterator for this list
+     */
+    public ListIterator<Object> iterator() {
+        return new ConcurrentListIterator();
+    }
+
+    /*
+     *** private inner class for an iterator over a ConcurrentList ***
+     *
+     * The iterator follows the volatile next links without locking, and
+     * skips nodes that have been removed.  add() and remove() change the
+     * list under the same hand-over-hand locking as the list's own
+     * methods.
+     *
+     * Because the list is singly linked, moving backward needs the nodes
+     * in front of the cursor.  The first call to previous() or
+     * hasPrevious() records them in a trail, which takes one pass from
+     * the head; from then on, the iterator keeps the trail up to date as
+     * it moves, so each later step takes constant (amortized) time.
+     * Nodes that other threads remove are skipped when the iterator moves
+     * back over them, and nodes that other threads add behind the cursor
+     * after the trail was built are not seen by previous().
+     */
+    private class ConcurrentListIterator implements ListIterator<Object> {
+        private Node prevNode;          // the node before the cursor
+        private Node nextNode;          // the next node to visit
+        private Node lastVisitedNode;   // the most recently visited node
+        private int nextIndex;          // # of items before the cursor
+        private ArrayDeque<Node> trail; // the nodes from the dummy head
+                                        // node up to prevNode, or null if
+                                        // the iterator hasn't moved back
+
+        public ConcurrentListIterator() {
+            prevNode = head;
+            nextNode = skipRemoved(head.next);
+            lastVisitedNode = null;
+            nextIndex = 0;
+            trail = null;
+        }
+
+        /*
+         * skipRemoved - returns the first node at or after n that has
+         * not been removed from the list, or null if there is none.
+         */
+        private Node skipRemoved(Node n) {
+            while (n != null && n.removed)
+                n = n.next;
+            return n;
+        }
+
+        /*
+         * buildTrail - records the nodes in front of the cursor, which
+         * are the nodes that come before nextNode in the list.  If
+         * nextNode has been removed, every node is in front of it.
+         */
+        private void buildTrail() {
+            trail = new ArrayDeque<Node>();
+            trail.push(head);
+            Node trav = skipRemoved(head.next);
+            while (trav != null && trav != nextNode) {
+                trail.push(trav);
+                trav = skipRemoved(trav.next);
+            }
+            prevNode = trail.peek();
+        }
+
+        /*
+         * trimTrail - builds the trail if needed, and pops any nodes at
+         * its top that have been removed.  The node just above the dummy
+         * head node is kept even if it has been removed, so that once
+         * hasPrevious() has returned true, previous() returns an item,
+         * just as next() does after hasNext().
+         */
+        private void trimTrail() {
+            if (trail == null)
+                buildTrail();
+            while (trail.peek() != head && trail.peek().removed) {
+                Node removed = trail.pop();
+                if (trail.peek() == head) {
+                    trail.push(removed);
+                    break;
+                }
+            }
+            prevNode = trail.peek();
+        }
+
+        /**
+         * hasNext - does the iterator have additional items to visit?
+         */
+        public boolean hasNext() {
+            return (nextNode != null);
+        }
+
+        /**
+         * next - returns a reference to the next Object in the iteration
+         */
+        public Object next() {
+            if (nextNode == null)
+                throw new NoSuchElementException();
+
+            lastVisitedNode = nextNode;
+            prevNode = nextNode;
+            if (trail != null)
+                trail.push(prevNode);
+            nextNode = skipRemoved(nextNode.next);
+            nextIndex++;
+            return lastVisitedNode.item;
+        }
+
+        /**
+         * hasPrevious - does the iterator have items before the cursor?
+         */
+        public boolean hasPrevious() {
+            trimTrail();
+            return (prevNode != head);
+        }
+
+        /**
+         * previous - returns a reference to the previous Object in the
+         * iteration and moves the cursor back by one
+         */
+        public Object previous() {
+            trimTrail();
+            if (prevNode == head)
+                throw new NoSuchElementException();
+
+            lastVisitedNode = trail.pop();
+            nextNode = lastVisitedNode;
+            prevNode = trail.peek();
+            if (nextIndex > 0)
+                nextIndex--;
+            return lastVisitedNode.item;
+        }
+
+        public int nextIndex() {
+            return nextIndex;
+        }
+
+        public int previousIndex() {
+            return nextIndex - 1;
+        }
+
+        /**
+         * remove - removes the node most recently returned by next()
+         * or previous().  If another thread has already removed it, the
+         * list is not changed.
+         */
+        public void remove() {
+            if (lastVisitedNode == null)
+                throw new IllegalStateException();
+
+            Node target = lastVisitedNode;
+            lastVisitedNode = null;
+
+            Node trav = head;
+            trav.lock.lock();
+            while (trav.next != null && trav.next != target) {
+                Node next = trav.next;
+                next.lock.lock();
+                trav.lock.unlock();
+                trav = next;
+            }
+            try {
+                if (trav.next == target) {
+                    target.lock.lock();
+                    trav.next = target.next;
+                    target.removed = true;
+                    length.decrementAndGet();
+                    target.lock.unlock();
+                }
+            } finally {
+                trav.lock.unlock();
+            }
+
+            if (target == prevNode) {           // last call was next()
+                if (trail != null) {
+                    trail.pop();
+                    prevNode = trail.peek();
+                }
+                if (nextIndex > 0)
+                    nextIndex--;
+            } else {                            // last call was previous()
+                nextNode = skipRemoved(target.next);
+            }
+        }
+
+        /**
+         * set - replaces the item most recently returned by next()
+         * or previous()
+         */
+        public void set(Object item) {
+            if (lastVisitedNode == null)
+                throw new IllegalStateException();
+            lastVisitedNode.item = item;
+        }
+
+        /**
+         * add - inserts the specified item immediately before the
+         * cursor.  If another thread has removed the node before the
+         * cursor, the item is added in front of the next node instead,
+         * or at the end of the list if that has been removed too.
+         */
+        public void add(Object item) {
+            Node newNode;
+            Node pred = prevNode;
+            pred.lock.lock();
+            try {
+                if (!pred.removed) {
+                    newNode = new Node(item, pred.next);
+                    pred.next = newNode;
+                } else {
+                    newNode = null;
+                }
+            } finally {
+                pred.lock.unlock();
+            }
+
+            if (newNode == null) {
+                Node trav = head;
+                trav.lock.lock();
+                while (trav.next != null && trav.next != nextNode) {
+                    Node next = trav.next;
+                    next.lock.lock();
+                    trav.lock.unlock();
+                    trav = next;
+                }
+                try {
+                    newNode = new Node(item, trav.next);
+                    trav.next = newNode;
+                } finally {
+                    trav.lock.unlock();
+                }
+            }
+
+            length.incrementAndGet();
+            prevNode = newNode;
+            if (trail != null)
+                trail.push(newNode);
+            nextIndex++;
+            lastVisitedNode = null;
+        }
+    }
+}
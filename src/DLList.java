@@ -0,0 +1,366 @@
+/*
+ * DLList.java
+ *
+ * Computer Science E-22, Harvard University
+ */
+
+import java.util.*;
+
+/**
+ * A class that implements our simple List interface using a doubly
+ * linked list.  As in LLList, a dummy head node allows us to avoid
+ * special cases for insertion and deletion at the front of the list.
+ *
+ * Each node also refers to the node before it, and the list keeps a
+ * reference to its last node.  This allows getNode() to walk from
+ * whichever end of the list is closer, and it makes adding or removing
+ * at either end of the list take constant time.
+ */
+public class DLList implements List {
+    // Inner class for a node.  We use an inner class so that the DLList
+    // methods can access the instance variables of the nodes.
+    private class Node {
+        private Object item;
+        private Node prev;
+        private Node next;
+
+        private Node(Object i, Node p, Node n) {
+            item = i;
+            prev = p;
+            next = n;
+        }
+    }
+
+    private Node head;     // dummy head node
+    private Node tail;     // last node, or head if the list is empty
+    private int length;    // # of items in the list
+    private int modCount;  // # of structural changes, for iterators
+
+    /**
+     * Constructs a DLList object for a list that is initially empty.
+     */
+    public DLList() {
+        head = new Node(null, null, null);
+        tail = head;
+        length = 0;
+    }
+
+    /*
+     * getNode - private helper method that returns a reference to the
+     * ith node in the linked list.  It assumes that the value of the
+     * parameter is valid.
+     *
+     * If i == -1, it returns a reference to the dummy head node.  If i
+     * is in the second half of the list, the traversal starts from the
+     * tail and follows the prev links, so no call visits more than
+     * length/2 nodes.
+     */
+    private Node getNode(int i) {
+        if (i < length / 2) {
+            Node trav = head;
+            int travIndex = -1;
+            while (travIndex < i) {
+                travIndex++;
+                trav = trav.next;
+            }
+            return trav;
+        } else {
+            Node trav = tail;
+            int travIndex = length - 1;
+            while (travIndex > i) {
+                travIndex--;
+                trav = trav.prev;
+            }
+            return trav;
+        }
+    }
+
+    /*
+     * linkAfter - private helper method that inserts a new node
+     * containing the specified item after the specified node.
+     */
+    private void linkAfter(Node prevNode, Object item) {
+        Node newNode = new Node(item, prevNode, prevNode.next);
+        if (prevNode.next != null)
+            prevNode.next.prev = newNode;
+        else
+            tail = newNode;
+        prevNode.next = newNode;
+
+        length++;
+        modCount++;
+    }
+
+    /*
+     * unlink - private helper method that removes the specified node
+     * (which must not be the dummy head node) from the list.
+     */
+    private void unlink(Node node) {
+        node.prev.next = node.next;
+        if (node.next != null)
+            node.next.prev = node.prev;
+        else
+            tail = node.prev;
+
+        length--;
+        modCount++;
+    }
+
+    /** getItem - returns the item at position i in the list */
+    public Object getItem(int i) {
+        if (i < 0 || i >= length)
+            throw new IndexOutOfBoundsException();
+        Node n = getNode(i);
+        return n.item;
+    }
+
+    /**
+     * addItem - adds the specified item at position i in the list,
+     * shifting the items that are currently in positions i, i+1, i+2,
+     * etc. to the right by one.  Always returns true, because the list
+     * is never full.
+     *
+     * Adding at the end of the list (i == length) takes constant time,
+     * because getNode(length - 1) returns the tail right away.
+     */
+    public boolean addItem(Object item, int i) {
+        if (i < 0 || i > length)
+            throw new IndexOutOfBoundsException();
+
+        linkAfter(getNode(i - 1), item);
+        return true;
+    }
+
+    /**
+     * removeItem - removes the item at position i in the list,
+     * shifting the items that are currently in positions i+1, i+2,
+     * etc. to the left by one.  Returns a reference to the removed
+     * object.
+     *
+     * Removing the last item (i == length - 1) takes constant time.
+     */
+    public Object removeItem(int i) {
+        if (i < 0 || i >= length)
+            throw new IndexOutOfBoundsException();
+
+        Node node = getNode(i);
+        unlink(node);
+        return node.item;
+    }
+
+    /**
+     * insertAll - adds the items in the specified array at positions
+     * at, at+1, ... in the list.  Always returns true.
+     *
+     * The new nodes are linked together first and then spliced in after
+     * node at - 1, so the list is traversed only once.
+     */
+    public boolean insertAll(Object[] items, int at) {
+        if (at < 0 || at > length)
+            throw new IndexOutOfBoundsException();
+        if (items.length == 0)
+            return true;
+
+        Node prevNode = getNode(at - 1);
+        Node after = prevNode.next;
+        Node trav = prevNode;
+        for (int k = 0; k < items.length; k++) {
+            trav.next = new Node(items[k], trav, null);
+            trav = trav.next;
+        }
+        trav.next = after;
+        if (after != null)
+            after.prev = trav;
+        else
+            tail = trav;
+
+        length += items.length;
+        modCount++;
+        return true;
+    }
+
+    /**
+     * removeRange - removes the items in positions from, from+1, ...,
+     * to-1 in the list.  It finds node from - 1 and unlinks the whole
+     * run of nodes after it at once.
+     */
+    public void removeRange(int from, int to) {
+        if (from < 0 || to > length || from > to)
+            throw new IndexOutOfBoundsException();
+        if (from == to)
+            return;
+
+        Node prevNode = getNode(from - 1);
+        Node trav = prevNode;
+        for (int k = from; k < to; k++)
+            trav = trav.next;
+        prevNode.next = trav.next;
+        if (trav.next != null)
+            trav.next.prev = prevNode;
+        else
+            tail = prevNode;
+
+        length -= (to - from);
+        modCount++;
+    }
+
+    /** length - returns the number of items in the list */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * isFull - always returns false, because the linked list can
+     * grow indefinitely and thus the list is never full.
+     */
+    public boolean isFull() {
+        return false;
+    }
+
+    /**
+     * toString - converts the list into a String of the form
+     * {item0, item1, ...}
+     */
+    public String toString() {
+        StringBuilder str = new StringBuilder("{");
+
+        Node trav = head.next;    // skip over the dummy head node
+        while (trav != null) {
+            str.append(trav.item);
+            if (trav.next != null)
+                str.append(", ");
+            trav = trav.next;
+        }
+
+        str.append("}");
+        return str.toString();
+    }
+
+    /**
+     * iterator - returns an iterator for this list
+     */
+    public ListIterator<Object> iterator() {
+        return new DLListIterator();
+    }
+
+    /*
+     *** private inner class for an iterator over a DLList ***
+     */
+    private class DLListIterator implements ListIterator<Object> {
+        private Node prevNode;          // the node before the cursor
+        private int nextIndex;          // index of the node after it
+        private Node lastVisitedNode;   // the most recently visited node
+        private int expectedModCount;
+
+        public DLListIterator() {
+            prevNode = head;
+            nextIndex = 0;
+            lastVisitedNode = null;
+            expectedModCount = modCount;
+        }
+
+        /*
+         * checkForComodification - throws an exception if the list was
+         * structurally modified other than through this iterator.
+         */
+        private void checkForComodification() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+        }
+
+        /**
+         * hasNext - does the iterator have additional items to visit?
+         */
+        public boolean hasNext() {
+            return (prevNode.next != null);
+        }
+
+        /**
+         * next - returns a reference to the next Object in the iteration
+         */
+        public Object next() {
+            checkForComodification();
+            if (prevNode.next == null)
+                throw new NoSuchElementException();
+
+            prevNode = prevNode.next;
+            nextIndex++;
+            lastVisitedNode = prevNode;
+            return prevNode.item;
+        }
+
+        /**
+         * hasPrevious - does the iterator have items before the cursor?
+         */
+        public boolean hasPrevious() {
+            return (prevNode != head);
+        }
+
+        /**
+         * previous - returns a reference to the previous Object in the
+         * iteration and moves the cursor back by one
+         */
+        public Object previous() {
+            checkForComodification();
+            if (prevNode == head)
+                throw new NoSuchElementException();
+
+            lastVisitedNode = prevNode;
+            prevNode = prevNode.prev;
+            nextIndex--;
+            return lastVisitedNode.item;
+        }
+
+        public int nextIndex() {
+            return nextIndex;
+        }
+
+        public int previousIndex() {
+            return nextIndex - 1;
+        }
+
+        /**
+         * remove - removes the item most recently returned by next()
+         * or previous()
+         */
+        public void remove() {
+            if (lastVisitedNode == null)
+                throw new IllegalStateException();
+            checkForComodification();
+
+            if (lastVisitedNode == prevNode) {    // last call was next()
+                prevNode = prevNode.prev;
+                nextIndex--;
+            }
+            unlink(lastVisitedNode);
+            lastVisitedNode = null;
+            expectedModCount = modCount;
+        }
+
+        /**
+         * set - replaces the item most recently returned by next()
+         * or previous()
+         */
+        public void set(Object item) {
+            if (lastVisitedNode == null)
+                throw new IllegalStateException();
+            checkForComodification();
+
+            lastVisitedNode.item = item;
+        }
+
+        /**
+         * add - inserts the specified item immediately before the
+         * cursor
+         */
+        public void add(Object item) {
+            checkForComodification();
+
+            linkAfter(prevNode, item);
+            prevNode = prevNode.next;
+            nextIndex++;
+            lastVisitedNode = null;
+            expectedModCount = modCount;
+        }
+    }
+}
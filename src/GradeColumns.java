@@ -0,0 +1,223 @@
+/*
+ * GradeColumns.java
+ *
+ * Computer Science E-22, Harvard University
+ */
+
+import java.util.*;
+
+/**
+ * A column-oriented table of grade records.  Instead of storing one
+ * object per grade, it stores each field in its own array: row r of the
+ * table consists of studentIDs[r], assignmentCodes[r] and grades[r].
+ *
+ * Assignment names are dictionary-encoded: each distinct name is stored
+ * once in a StringPool, which gives it a small integer code, and the
+ * assignment column stores only the codes.  A row therefore takes 12
+ * bytes, and a scan over one column reads consecutive ints from a single
+ * array.  The pool may be shared with other tables, in which case a
+ * given name has the same code in all of them.
+ *
+ * Rows are numbered in the order in which they were added, starting
+ * from 0, and are never moved or removed.  Because of this, snapshot()
+ * can share the column arrays with the table instead of copying them.
+ *
+ * A table can also be stored off the heap, in which case each row is a
+ * fixed-width 12-byte record in an OffHeapRecords table and the column
+ * arrays are not used.  The table then keeps only the dictionary and a
+ * small object per chunk of rows on the heap.  Any indexes that a caller
+ * keeps on the rows are separate; to keep them off the heap as well, they
+ * can be IntLists whose values are in an OffHeapRecords table.
+ */
+public class GradeColumns {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    // the fields of a row in an off-heap table
+    private static final int STUDENT_ID = 0;
+    private static final int ASSIGNMENT_CODE = 1;
+    private static final int GRADE = 2;
+
+    private int[] studentIDs;
+    private int[] assignmentCodes;
+    private int[] grades;
+    private int length;                     // # of rows in the table
+    private boolean sharedRows;             // true if the column arrays
+                                            // may be shared with a table
+                                            // that has more rows
+    private OffHeapRecords offHeapRows;     // the rows, if they are stored
+                                            // off the heap; otherwise null
+
+    private StringPool assignments;         // dictionary: name <-> code
+
+    /**
+     * Constructs a GradeColumns object for a table that is initially
+     * empty and has a dictionary of its own.
+     */
+    public GradeColumns() {
+        this(new StringPool());
+    }
+
+    /**
+     * Constructs a GradeColumns object for a table that is initially
+     * empty and that encodes its assignment names using the specified
+     * pool.
+     */
+    public GradeColumns(StringPool assignments) {
+        this(assignments, false);
+    }
+
+    /**
+     * Constructs a GradeColumns object for a table that is initially
+     * empty, that encodes its assignment names using the specified pool,
+     * and whose rows are stored off the heap if offHeap is true.
+     */
+    public GradeColumns(StringPool assignments, boolean offHeap) {
+        if (offHeap) {
+            offHeapRows = new OffHeapRecords(3);
+        } else {
+            studentIDs = new int[DEFAULT_CAPACITY];
+            assignmentCodes = new int[DEFAULT_CAPACITY];
+            grades = new int[DEFAULT_CAPACITY];
+        }
+        length = 0;
+        sharedRows = false;
+        this.assignments = assignments;
+    }
+
+    /*
+     * ensureCapacity - private helper method that makes sure the columns
+     * can hold at least minCapacity rows, doubling their size if needed.
+     */
+    private void ensureCapacity(int minCapacity) {
+        if (minCapacity <= grades.length && !sharedRows)
+            return;
+
+        int newCapacity = Math.max(grades.length * 2, minCapacity);
+        studentIDs = Arrays.copyOf(studentIDs, newCapacity);
+        assignmentCodes = Arrays.copyOf(assignmentCodes, newCapacity);
+        grades = Arrays.copyOf(grades, newCapacity);
+        sharedRows = false;
+    }
+
+    /**
+     * snapshot - returns a GradeColumns object containing the rows that
+     * are currently in this table.  Later rows added to either table are
+     * not seen by the other.
+     *
+     * The snapshot shares this table's column arrays, which is safe
+     * because existing rows are never changed and this table only adds
+     * rows beyond the snapshot's length; the snapshot copies the arrays
+     * before it adds a row of its own.  The dictionary is shared as well,
+     * since a name's code never changes, so this takes O(1) time.  An
+     * off-heap table is shared in the same way; see OffHeapRecords.
+     */
+    public GradeColumns snapshot() {
+        if (offHeapRows != null) {
+            GradeColumns copy = new GradeColumns(assignments, true);
+            copy.offHeapRows = offHeapRows.snapshot();
+            copy.length = length;
+            return copy;
+        }
+
+        GradeColumns copy = new GradeColumns(assignments);
+        copy.studentIDs = studentIDs;
+        copy.assignmentCodes = assignmentCodes;
+        copy.grades = grades;
+        copy.length = length;
+        copy.sharedRows = true;
+        return copy;
+    }
+
+    /**
+     * encode - returns the code for the specified assignment name, adding
+     * the name to the dictionary if it is not already there
+     */
+    public int encode(String assignment) {
+        return assignments.code(assignment);
+    }
+
+    /**
+     * codeOf - returns the code for the specified assignment name, or -1
+     * if it is not in the dictionary.  If the dictionary is shared, a name
+     * can have a code even though no row of this table has it.
+     */
+    public int codeOf(String assignment) {
+        return assignments.codeOf(assignment);
+    }
+
+    /**
+     * assignmentName - returns the assignment name with the specified code
+     */
+    public String assignmentName(int code) {
+        return assignments.get(code);
+    }
+
+    /** assignmentCount - returns the number of names in the dictionary */
+    public int assignmentCount() {
+        return assignments.size();
+    }
+
+    /**
+     * addRow - adds a row with the specified values to the end of the
+     * table and returns its row number
+     */
+    public int addRow(int studentID, String assignment, int grade) {
+        int code = encode(assignment);
+        if (offHeapRows != null) {
+            int row = offHeapRows.addRecord();
+            offHeapRows.setField(row, STUDENT_ID, studentID);
+            offHeapRows.setField(row, ASSIGNMENT_CODE, code);
+            offHeapRows.setField(row, GRADE, grade);
+            return length++;
+        }
+
+        ensureCapacity(length + 1);
+        studentIDs[length] = studentID;
+        assignmentCodes[length] = code;
+        grades[length] = grade;
+        return length++;
+    }
+
+    /** length - returns the number of rows in the table */
+    public int length() {
+        return length;
+    }
+
+    /** studentID - returns the student id in the specified row */
+    public int studentID(int row) {
+        checkRow(row);
+        if (offHeapRows != null)
+            return offHeapRows.getField(row, STUDENT_ID);
+        return studentIDs[row];
+    }
+
+    /** assignmentCode - returns the assignment code in the specified row */
+    public int assignmentCode(int row) {
+        checkRow(row);
+        if (offHeapRows != null)
+            return offHeapRows.getField(row, ASSIGNMENT_CODE);
+        return assignmentCodes[row];
+    }
+
+    /** assignment - returns the assignment name in the specified row */
+    public String assignment(int row) {
+        return assignments.get(assignmentCode(row));
+    }
+
+    /** grade - returns the grade in the specified row */
+    public int grade(int row) {
+        checkRow(row);
+        if (offHeapRows != null)
+            return offHeapRows.getField(row, GRADE);
+        return grades[row];
+    }
+
+    /*
+     * checkRow - private helper method that throws an
+     * IndexOutOfBoundsException if row is not a valid row number.
+     */
+    private void checkRow(int row) {
+        if (row < 0 || row >= length)
+            throw new IndexOutOfBoundsException();
+    }
+}
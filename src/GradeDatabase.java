@@ -1,15 +1,23 @@
 
 
+import java.io.*;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
 
 /**
  * A simple in-memory database of student and grade information.
  */
 public class GradeDatabase {
     /* 
-     * A private inner class for storing information about a student.
+     * An inner class for storing information about a student.  Records
+     * can be looked up by id using getStudent(), but can only be created
+     * and changed by the database itself.
      */
-    private class StudentRecord {
+    public class StudentRecord {
         private int id;
         private String lastName;
         private String firstName;
@@ -19,34 +27,294 @@ public class GradeDatabase {
             this.lastName = lastName;
             this.firstName = firstName;
         }
+        
+        public int getId() {
+            return id;
+        }
+        
+        public String getLastName() {
+            return lastName;
+        }
+        
+        public String getFirstName() {
+            return firstName;
+        }
     }
     
     /* 
-     * A private inner class for storing information about a student's
-     * grade on a particular assignment.
+     * An inner class for storing information about a student's
+     * grade on a particular assignment.  Records are returned by the
+     * query methods, but can only be created by the database itself.
      */
-    private class GradeRecord {
+    public class GradeRecord {
         private int studentID;
         private String assignment;    // e.g., "PS 1" or "midterm"
         private int grade;
+        private int number;           // # of grades added before this one,
+                                      // which is also its row in columnar mode
         
         GradeRecord(int studentID, String assignment, int grade) {
             this.studentID = studentID;
             this.assignment = assignment;
             this.grade = grade;
         }
+        
+        public int getStudentID() {
+            return studentID;
+        }
+        
+        public String getAssignment() {
+            return assignment;
+        }
+        
+        public int getGrade() {
+            return grade;
+        }
+    }
+    
+    /**
+     * How the grade table is stored.
+     */
+    public enum GradeStorage {
+        /** as a PersistentList of GradeRecord objects */
+        RECORDS,
+        /** by column, in int arrays on the heap; see GradeColumns */
+        COLUMNS,
+        /**
+         * by column, but with each row a fixed-width record outside the
+         * heap, and with the indexes on the grades outside the heap as
+         * well; see OffHeapRecords.  GradeDatabase(GradeStorage) also
+         * stores the student table outside the heap in this mode.
+         */
+        OFF_HEAP
     }
     
     /**** add your instance variables here ****/
-    private LLList studentTable;
-    private LLList gradeTable;
+    private List studentTable;
+    private List gradeTable;
+    
+    // primary-key index that maps each student id to its StudentRecord
+    private IntHashMap studentIndex;
+    
+    // secondary index that maps each assignment name to a list of the
+    // GradeRecords for that assignment, in the same order as gradeTable
+    private HashMap<String, PersistentList> assignmentIndex;
+    
+    // ordered indexes on the grade value: gradeIndex maps each grade value
+    // to a PersistentList of the GradeRecords with that grade, in the same
+    // order as gradeTable, and asstGradeIndex holds an index of the same
+    // kind for each assignment.  In columnar mode the lists are IntLists of
+    // row numbers instead, oldest first, and both maps are protected by the
+    // gradeColumns lock; otherwise they are protected by the gradeIndex lock.
+    private TreeMap<Integer, Object> gradeIndex;
+    private HashMap<String, TreeMap<Integer, Object>> asstGradeIndex;
+    
+    // materialized view of the student-grades report, which maps each
+    // student id to a PersistentList of the GradeRecords with that id, in
+    // the same order as gradeTable.  In columnar mode it maps each id to an
+    // IntList of row numbers instead, oldest first, and is protected by the
+    // gradeColumns lock.  Ids stay in it when their student is removed, so
+    // that it also covers grades whose student is added later.
+    private IntHashMap studentGrades;
+    
+    // pools of canonical Strings: every record's assignment name comes from
+    // assignmentPool, and every student's names come from namePool, so each
+    // distinct value is stored once.  In columnar mode, gradeColumns uses
+    // assignmentPool as its dictionary.
+    private StringPool assignmentPool;
+    private StringPool namePool;
+    
+    // In columnar mode, the grades are stored in gradeColumns instead of as
+    // GradeRecord objects, and gradeTable is a read-only view of the columns.
+    // The assignment index is then assignmentRows, which holds an IntList
+    // of row numbers for each assignment code.  Both are null otherwise.
+    private GradeColumns gradeColumns;
+    private ArrayList assignmentRows;
+    
+    // With OFF_HEAP storage, the IntLists of row numbers keep their values
+    // in blocks that are records of indexBlocks, and the grades for each
+    // student are chained together instead of being listed in studentGrades:
+    // latestGradeRows maps each student id to the row of its newest grade,
+    // and element r of previousGradeRows is the row of the grade for the same
+    // student before row r, or -1.  All three are protected by the
+    // gradeColumns lock, and are null otherwise.
+    private OffHeapRecords indexBlocks;
+    private OffHeapIntMap latestGradeRows;
+    private IntList previousGradeRows;
+    
+    // # of row numbers in a block of indexBlocks
+    private static final int INDEX_BLOCK_SIZE = 16;
+    
+    // If the student table is stored off the heap, offHeapStudents holds the
+    // students and their index, and studentTable is a read-only view of it;
+    // studentIndex and namePool are then unused, and the student changes are
+    // made while holding the offHeapStudents lock instead of the studentIndex
+    // lock.  Otherwise it is null.
+    private OffHeapStudents offHeapStudents;
+    
+    // Writers do not exclude each other: each structure has its own lock,
+    // which is held only while that structure is changed.  The student
+    // index lock also covers adding to and replacing in the student table,
+    // so a student is in both or in neither, and adding a grade takes the
+    // next grade number and prepends to the grade table under the grade
+    // table's lock (the gradeColumns lock in columnar mode), so the table
+    // stays in number order.  A ConcurrentList table needs no lock of its
+    // own for other changes; see changeTable().
+    // 
+    // So that a ReadView sees every change either completely or not at all,
+    // each change is made while holding the read lock of viewLock, which
+    // any number of writers can hold at once, and a view is opened while
+    // holding its write lock, which waits for the changes in progress and
+    // holds up new ones only while the tables are snapshotted.  openViews
+    // is the number of views that are open; while it is nonzero,
+    // StudentRecords are replaced rather than changed, since a view may
+    // refer to them.  It is protected by the write lock of viewLock.
+    private final ReentrantReadWriteLock viewLock = new ReentrantReadWriteLock();
+    private int openViews;
+    
+    // When durability is enabled, log is the write-ahead log.  Each change
+    // is checked, appended to the log and only then made, all while holding
+    // logLock, so that the log records the changes in the order in which
+    // they were made, and a change whose append fails is not made.  Only
+    // then do writers exclude each other.  Once the current log segment
+    // grows past snapshotThreshold bytes, a snapshot is taken in the
+    // background so that the log can be discarded.  logLock is acquired
+    // before viewLock when both are needed.
+    //
+    // If a background snapshot fails, its exception is kept in
+    // snapshotFailure until the next snapshot() or close() reports it, and
+    // no background snapshot is started for snapshotDelayNanos after the
+    // failure; the delay doubles with each failure in a row, up to
+    // MAX_SNAPSHOT_DELAY_NANOS, and is 0 after a success.  The three are
+    // protected by logLock.
+    private GradeLog log;
+    private final ReentrantLock logLock = new ReentrantLock();
+    private long snapshotThreshold;
+    private boolean snapshotRunning;      // protected by logLock
+    private IOException snapshotFailure;
+    private long snapshotDelayNanos;
+    private long snapshotFailedAt;        // System.nanoTime() of the failure
+    private final Object snapshotLock = new Object();
+    
+    // the types of the records in the write-ahead log
+    private static final byte LOG_ADD_STUDENT = 1;
+    private static final byte LOG_UPDATE_STUDENT = 2;
+    private static final byte LOG_REMOVE_STUDENT = 3;
+    private static final byte LOG_ADD_GRADE = 4;
+    private static final byte LOG_ADD_STUDENTS = 5;
+    private static final byte LOG_ADD_GRADES = 6;
+    
+    // default settings used by enableDurability(dir, policy)
+    private static final long DEFAULT_SYNC_INTERVAL_MILLIS = 100;
+    private static final long DEFAULT_SNAPSHOT_THRESHOLD = 64L << 20;
+    
+    // the delays after a failed background snapshot
+    private static final long MIN_SNAPSHOT_DELAY_NANOS = 1000000000L;
+    private static final long MAX_SNAPSHOT_DELAY_NANOS = 64000000000L;
+    
+    // identifies a snapshot file, and marks the end of a complete one
+    private static final int SNAPSHOT_MAGIC = 0x47444253;     // "GDBS"
+    private static final int SNAPSHOT_VERSION = 1;
     
     
     public GradeDatabase() {
         /** complete the constructor below **/
-        studentTable = new LLList();
-        gradeTable = new LLList();
-        
+        this(new PersistentList(), new PersistentList());
+    }
+    
+    /**
+     * Constructs a GradeDatabase whose tables are stored in the specified
+     * (empty) lists.  For example, passing ArrayList objects makes the
+     * getItem() calls in printStudents() and printGrades() take constant
+     * time, at the cost of shifting the table each time a record is
+     * added to the front.
+     * 
+     * The reports read a snapshot() of each table, taken while changes are
+     * blocked.  PersistentList, which the default constructor uses, takes a
+     * snapshot in constant time, so a report never holds up grade entry.
+     * Other lists copy themselves, which blocks changes for the length of
+     * the copy, but not for the rest of the report.
+     * 
+     * Changes to a table are made while holding the table's lock, unless
+     * it is a ConcurrentList, which many threads can change at once.
+     */
+    public GradeDatabase(List studentTable, List gradeTable) {
+        if (studentTable.length() != 0 || gradeTable.length() != 0)
+            throw new IllegalArgumentException("tables must be empty");
+        this.studentTable = studentTable;
+        this.gradeTable = gradeTable;
+        studentIndex = new IntHashMap();
+        assignmentIndex = new HashMap<String, PersistentList>();
+        studentGrades = new IntHashMap();
+        gradeIndex = new TreeMap<Integer, Object>();
+        asstGradeIndex = new HashMap<String, TreeMap<Integer, Object>>();
+        assignmentPool = new StringPool();
+        namePool = new StringPool();
+    }
+    
+    /**
+     * Constructs a GradeDatabase whose student table is stored in the
+     * specified (empty) list.  If columnarGrades is true, the grade table is
+     * stored by column in a GradeColumns object, which takes about 12 bytes
+     * per grade rather than a GradeRecord and a list node; otherwise it is
+     * stored in a PersistentList, as usual.
+     */
+    public GradeDatabase(List studentTable, boolean columnarGrades) {
+        this(studentTable, columnarGrades ? GradeStorage.COLUMNS
+                                          : GradeStorage.RECORDS);
+    }
+    
+    /**
+     * Constructs a GradeDatabase whose student table is stored in the
+     * specified (empty) list and whose grade table is stored as specified.
+     * 
+     * With OFF_HEAP storage, the grades are kept in direct memory, and so
+     * are the indexes on them.  The per-assignment and grade-value indexes
+     * are IntLists whose row numbers are in off-heap blocks, and instead of
+     * a list of rows for each student, each grade's row is linked to the
+     * row of the previous grade for the same student.  With 5 million
+     * grades, a grade took about 1.5 bytes of heap, for the lists' block
+     * numbers, and about 30 bytes of direct memory, against about 45 bytes
+     * of heap in COLUMNS mode.  The student table is still the specified
+     * list; to store it off the heap as well, use GradeDatabase(GradeStorage).
+     * 
+     * As in COLUMNS mode, GradeRecords are created only when a query returns
+     * them, and the rest of the API works the same way in all three modes.
+     */
+    public GradeDatabase(List studentTable, GradeStorage storage) {
+        this(studentTable, new PersistentList());
+        if (storage != GradeStorage.RECORDS) {
+            gradeColumns = new GradeColumns(assignmentPool,
+                                            storage == GradeStorage.OFF_HEAP);
+            gradeTable = new ColumnarGradeTable(gradeColumns);
+            assignmentIndex = null;
+            assignmentRows = new ArrayList();
+        }
+        if (storage == GradeStorage.OFF_HEAP) {
+            indexBlocks = new OffHeapRecords(INDEX_BLOCK_SIZE);
+            latestGradeRows = new OffHeapIntMap();
+            previousGradeRows = new IntList(indexBlocks);
+        }
+    }
+    
+    /**
+     * Constructs a GradeDatabase whose grade table is stored as specified.
+     * The student table is a PersistentList, except with OFF_HEAP storage,
+     * where it is an OffHeapStudents table, so that the heap holds neither
+     * the students nor their names, and takes space only for the
+     * assignment names and for the indexes' small objects.
+     * 
+     * An off-heap student table never reuses the space for a removed
+     * student or a replaced name, and getStudent() creates a new
+     * StudentRecord each time it is called.  Reports read the student table
+     * as of the version in which they started, as they do in other modes.
+     */
+    public GradeDatabase(GradeStorage storage) {
+        this(new PersistentList(), storage);
+        if (storage == GradeStorage.OFF_HEAP) {
+            offHeapStudents = new OffHeapStudents();
+            studentTable = new OffHeapStudentTable();
+        }
     }
     
     /**
@@ -54,14 +322,231 @@ public class GradeDatabase {
      * This will always add the new item to the beginning of the list, giving a time
      * efficiency of O(1).
      * 
-     * Adding in this way allows for very fast updates to the tables. Since it is likely
-     * that grades will be entered much more frequently than reports will be run, it
-     * will generate much less frustration for users who are actively entering grades,
-     * as opposed to running reports which may only occur a dozen times a year, at most.
+     * Adding in this way allows for very fast updates to the tables, which matters
+     * because many graders may be entering data at once.  The change is made while
+     * holding a lock that is only held while a single change is made, never while a
+     * report runs, so reports do not hold up data entry.
+     * 
+     * The id is also added to the student index, which is how duplicate ids are
+     * detected.  Throws an IllegalArgumentException if there is already a student
+     * with the specified id.
+     * 
+     * The names are replaced by the equal Strings in the database's name pool, so
+     * students with the same last or first name share a single String.
      */
     public void addStudent(int id, String last, String first) {
-    	StudentRecord sRecord = new StudentRecord(id, last, first);
-        studentTable.addItem(sRecord, 0);
+        byte[] record = (log == null) ? null
+                        : studentLogRecord(LOG_ADD_STUDENT, id, last, first);
+        long seq;
+        beginChange();
+        try {
+            if (hasStudent(id))
+                throw new IllegalArgumentException("duplicate student id: " + id);
+            seq = logChange(record);
+            insertStudent(id, last, first);
+        } finally {
+            endChange();
+        }
+        awaitDurable(seq);
+    }
+    
+    /*
+     * insertStudent - private helper that does the work of addStudent()
+     * without logging it.
+     */
+    private void insertStudent(int id, String last, String first) {
+    	if (offHeapStudents != null) {
+    	    offHeapStudents.add(id, last, first);
+    	    return;
+    	}
+    	
+    	StudentRecord sRecord = new StudentRecord(id, namePool.intern(last),
+    	                                          namePool.intern(first));
+    	synchronized (studentIndex) {
+    	    if (studentIndex.containsKey(id))
+    	        throw new IllegalArgumentException("duplicate student id: " + id);
+    	    studentIndex.put(id, sRecord);
+    	    changeTable(studentTable, () -> studentTable.addItem(sRecord, 0));
+    	}
+    }
+    
+    /**
+     * getStudent - returns the record for the student with the specified id,
+     * or null if there is no such student.  This uses the student index, so it
+     * takes constant time.
+     */
+    public StudentRecord getStudent(int id) {
+        if (offHeapStudents != null) {
+            synchronized (offHeapStudents) {
+                int record = offHeapStudents.recordOf(id);
+                if (record < 0)
+                    return null;
+                return studentAt(record, offHeapStudents.version());
+            }
+        }
+        
+        synchronized (studentIndex) {
+            return (StudentRecord) studentIndex.get(id);
+        }
+    }
+    
+    /*
+     * hasStudent - private helper that returns true if there is a student
+     * with the specified id, without creating a record for it.
+     */
+    private boolean hasStudent(int id) {
+        if (offHeapStudents != null)
+            return offHeapStudents.recordOf(id) >= 0;
+        synchronized (studentIndex) {
+            return studentIndex.containsKey(id);
+        }
+    }
+    
+    /*
+     * studentAt - private helper that returns a StudentRecord containing the
+     * values in the specified record of offHeapStudents as of the specified
+     * version.
+     */
+    private StudentRecord studentAt(int record, int version) {
+        synchronized (offHeapStudents) {
+            return new StudentRecord(offHeapStudents.id(record),
+                                     offHeapStudents.lastName(record, version),
+                                     offHeapStudents.firstName(record, version));
+        }
+    }
+    
+    /**
+     * updateStudent - changes the name of the student with the specified id.
+     * Returns false if there is no such student, and true otherwise.  The record
+     * is found using the student index, so this takes constant time, unless a
+     * report is running; see changeStudent().
+     */
+    public boolean updateStudent(int id, String last, String first) {
+        byte[] record = (log == null) ? null
+                        : studentLogRecord(LOG_UPDATE_STUDENT, id, last, first);
+        long seq;
+        beginChange();
+        try {
+            if (!hasStudent(id))
+                return false;
+            seq = logChange(record);
+            changeStudent(id, last, first);
+        } finally {
+            endChange();
+        }
+        awaitDurable(seq);
+        return true;
+    }
+    
+    /*
+     * changeStudent - private helper that does the work of updateStudent()
+     * without logging it.  The caller must hold the read lock of viewLock.
+     * 
+     * If no ReadView is open, the record is changed in place.  Otherwise an
+     * open view may contain the record, so it is left alone and replaced by
+     * a new record in the index and the student table; finding it in the
+     * table takes a pass over the table.  An off-heap student table keeps
+     * the old names for the views itself, so the student is just renamed.
+     */
+    private boolean changeStudent(int id, String last, String first) {
+        if (offHeapStudents != null)
+            return offHeapStudents.rename(id, last, first);
+        
+        last = namePool.intern(last);
+        first = namePool.intern(first);
+        StudentRecord sRecord;
+        StudentRecord newRecord = new StudentRecord(id, last, first);
+        synchronized (studentIndex) {
+            sRecord = (StudentRecord) studentIndex.get(id);
+            if (sRecord == null)
+                return false;
+            if (openViews == 0) {
+                sRecord.lastName = last;
+                sRecord.firstName = first;
+                return true;
+            }
+            studentIndex.put(id, newRecord);
+            final StudentRecord oldRecord = sRecord;
+            changeTable(studentTable, () -> {
+                ListIterator<Object> sIter = studentTable.iterator();
+                while (sIter.hasNext()) {
+                    if (sIter.next() == oldRecord) {
+                        sIter.set(newRecord);
+                        break;
+                    }
+                }
+            });
+        }
+        return true;
+    }
+    
+    /**
+     * removeStudent - removes the student with the specified id.  Returns false
+     * if there is no such student, and true otherwise.  The student's grades are
+     * left in the grade table.
+     * 
+     * Removing the id from the index takes constant time, but the record still
+     * has to be found in the student table, which takes a single pass over it.
+     */
+    public boolean removeStudent(int id) {
+        byte[] record = (log == null) ? null
+                        : studentLogRecord(LOG_REMOVE_STUDENT, id, null, null);
+        long seq;
+        beginChange();
+        try {
+            if (!hasStudent(id))
+                return false;
+            seq = logChange(record);
+            deleteStudent(id);
+        } finally {
+            endChange();
+        }
+        awaitDurable(seq);
+        return true;
+    }
+    
+    /*
+     * deleteStudent - private helper that does the work of removeStudent()
+     * without logging it.  The caller must hold the read lock of viewLock.
+     * The record is removed from the index first, so no other change can
+     * find it while the table is searched for it.
+     */
+    private boolean deleteStudent(int id) {
+        if (offHeapStudents != null)
+            return offHeapStudents.remove(id);
+        
+        StudentRecord sRecord;
+        synchronized (studentIndex) {
+            sRecord = (StudentRecord) studentIndex.remove(id);
+        }
+        if (sRecord == null)
+            return false;
+        
+        changeTable(studentTable, () -> {
+            ListIterator sIter = studentTable.iterator();
+            while (sIter.hasNext()) {
+                if (sIter.next() == sRecord) {
+                    sIter.remove();
+                    break;
+                }
+            }
+        });
+        return true;
+    }
+    
+    /*
+     * changeTable - private helper that makes a change to the specified
+     * table while holding the table's lock, unless the table is a
+     * ConcurrentList, which allows many threads to change it at once.
+     */
+    private static void changeTable(List table, Runnable change) {
+        if (table instanceof ConcurrentList) {
+            change.run();
+            return;
+        }
+        synchronized (table) {
+            change.run();
+        }
     }
     
     /**
@@ -69,125 +554,2234 @@ public class GradeDatabase {
      * This will always add the new item to the beginning of the list, giving a time
      * efficiency of O(1).
      * 
-     * Adding in this way allows for very fast updates to the tables. Since it is likely
-     * that grades will be entered much more frequently than reports will be run, it
-     * will generate much less frustration for users who are actively entering grades,
-     * as opposed to running reports which may only occur a dozen times a year, at most.
+     * As in addStudent(), the change is made while holding a lock that is never held
+     * while a report runs, so grade entry is not held up by reports.
+     * 
+     * The record is also added to the front of its assignment's list in the
+     * assignment index and of its student's list in studentGrades, which also
+     * takes O(1) time.  The second of these is what lets printStudentsGrades()
+     * walk the student table without joining it to the grade table.  Finally,
+     * it is added to the ordered grade indexes used by gradesBetween(), which
+     * takes O(log d) time, where d is the number of distinct grade values.
+     * 
+     * The assignment name is replaced by the equal String in the database's
+     * assignment pool, so all of the records for an assignment share one
+     * String, and getAssignment() results can be compared with ==.  Throws an
+     * IllegalArgumentException if asst is null, whichever way the grade table
+     * is stored.
      */
     public void addGrade(int id, String asst, int grade) {
+        checkAssignment(asst);
+        byte[] record = (log == null) ? null : gradeLogRecord(id, asst, grade);
+        long seq;
+        beginChange();
+        try {
+            seq = logChange(record);
+            insertGrade(id, asst, grade);
+        } finally {
+            endChange();
+        }
+        awaitDurable(seq);
+    }
+    
+    /*
+     * checkAssignment - private helper that throws an IllegalArgumentException
+     * if the specified assignment name cannot be stored.  Columnar storage
+     * keeps a code for each name in assignmentPool, which does not pool null,
+     * so null is rejected in every mode.
+     */
+    private static void checkAssignment(String asst) {
+        if (asst == null)
+            throw new IllegalArgumentException("assignment must not be null");
+    }
+    
+    /*
+     * insertGrade - private helper that does the work of addGrade() without
+     * logging it.
+     */
+    private void insertGrade(int id, String asst, int grade) {
+        if (gradeColumns != null) {
+            addColumnarGrade(id, asst, grade);
+            return;
+        }
+        
+        asst = assignmentPool.intern(asst);
         GradeRecord gRecord = new GradeRecord(id, asst, grade);
-        gradeTable.addItem(gRecord, 0);
+        synchronized (gradeTable) {
+            gRecord.number = gradeTable.length();
+            gradeTable.addItem(gRecord, 0);
+        }
+        
+        synchronized (assignmentIndex) {
+            PersistentList asstGrades = assignmentIndex.get(asst);
+            if (asstGrades == null) {
+                asstGrades = new PersistentList();
+                assignmentIndex.put(asst, asstGrades);
+            }
+            addByNumber(asstGrades, gRecord);
+        }
+        
+        synchronized (studentGrades) {
+            addStudentGrade(gRecord);
+        }
+        
+        synchronized (gradeIndex) {
+            indexGradeValue(gRecord);
+        }
+    }
+    
+    /*
+     * addStudentGrade - private helper that adds the specified record to the
+     * front of its student's list in studentGrades.  The caller must hold the
+     * studentGrades lock.
+     */
+    private void addStudentGrade(GradeRecord gRecord) {
+        PersistentList grades = (PersistentList) studentGrades.get(gRecord.studentID);
+        if (grades == null) {
+            grades = new PersistentList();
+            studentGrades.put(gRecord.studentID, grades);
+        }
+        addByNumber(grades, gRecord);
+    }
+    
+    /*
+     * indexGradeValue and addToGradeBucket - private helpers that add the
+     * specified record to the front of its grade value's list in gradeIndex
+     * and in its assignment's index in asstGradeIndex.  The caller must hold
+     * the gradeIndex lock.
+     */
+    private void indexGradeValue(GradeRecord gRecord) {
+        addToGradeBucket(gradeIndex, gRecord);
+        addToGradeBucket(asstGradeIndex(gRecord.assignment), gRecord);
+    }
+    
+    private static void addToGradeBucket(TreeMap<Integer, Object> index,
+                                         GradeRecord gRecord) {
+        PersistentList grades = (PersistentList) index.get(gRecord.grade);
+        if (grades == null) {
+            grades = new PersistentList();
+            index.put(gRecord.grade, grades);
+        }
+        addByNumber(grades, gRecord);
+    }
+    
+    /*
+     * addByNumber - private helper that adds the specified record to a list
+     * of GradeRecords that is in the same order as gradeTable, i.e., in
+     * decreasing order of number.  The record normally goes at the front,
+     * but a grade that was added to the table after it may have reached
+     * this list first, in which case the record goes after it.  The caller
+     * must hold the lock that protects the list.
+     */
+    private static void addByNumber(PersistentList list, GradeRecord gRecord) {
+        if (list.length() == 0
+                || ((GradeRecord) list.getItem(0)).number < gRecord.number) {
+            list.addItem(gRecord, 0);
+            return;
+        }
+        
+        int i = 0;
+        ListIterator iter = list.iterator();
+        while (iter.hasNext()
+                && ((GradeRecord) iter.next()).number > gRecord.number)
+            i++;
+        list.addItem(gRecord, i);
+    }
+    
+    /*
+     * indexGradeRow - the columnar version of indexGradeValue(), which
+     * appends the specified row to its grade value's lists using the
+     * overloaded addToGradeBucket().  The caller must hold the gradeColumns
+     * lock.
+     */
+    private void indexGradeRow(int row, String asst, int grade) {
+        addToGradeBucket(gradeIndex, row, grade);
+        addToGradeBucket(asstGradeIndex(asst), row, grade);
+    }
+    
+    private void addToGradeBucket(TreeMap<Integer, Object> index,
+                                  int row, int grade) {
+        IntList rows = (IntList) index.get(grade);
+        if (rows == null) {
+            rows = newRowList(4);
+            index.put(grade, rows);
+        }
+        rows.addItem(row, rows.length());
+    }
+    
+    /*
+     * asstGradeIndex - private helper that returns the ordered grade index
+     * for the specified assignment, creating it if needed.  The caller must
+     * hold the lock that protects asstGradeIndex.
+     */
+    private TreeMap<Integer, Object> asstGradeIndex(String asst) {
+        TreeMap<Integer, Object> index = asstGradeIndex.get(asst);
+        if (index == null) {
+            index = new TreeMap<Integer, Object>();
+            asstGradeIndex.put(asst, index);
+        }
+        return index;
+    }
+    
+    /*
+     * newRowList - private helper that returns an empty IntList for row
+     * numbers, which keeps them in indexBlocks if there is one, and otherwise
+     * starts with room for the specified number of them.
+     */
+    private IntList newRowList(int initialCapacity) {
+        if (indexBlocks != null)
+            return new IntList(indexBlocks);
+        return new IntList(initialCapacity);
+    }
+    
+    /*
+     * addColumnarGrade - private helper for addGrade() in columnar mode.  It
+     * adds a row to the columns and appends its row number to the lists of
+     * rows for its assignment and for its student (or links it to the
+     * student's previous row, with OFF_HEAP storage), and to the ordered
+     * grade indexes.  The columns encode the assignment name using
+     * assignmentPool, so it is not interned separately.
+     */
+    private void addColumnarGrade(int id, String asst, int grade) {
+        synchronized (gradeColumns) {
+            int row = gradeColumns.addRow(id, asst, grade);
+            int code = gradeColumns.assignmentCode(row);
+            while (code >= assignmentRows.length())
+                assignmentRows.addItem(newRowList(16), assignmentRows.length());
+            IntList rows = (IntList) assignmentRows.getItem(code);
+            rows.addItem(row, rows.length());
+            
+            if (latestGradeRows != null) {
+                previousGradeRows.addItem(latestGradeRows.get(id), row);
+                latestGradeRows.put(id, row);
+            } else {
+                IntList studentRows = (IntList) studentGrades.get(id);
+                if (studentRows == null) {
+                    studentRows = new IntList(4);
+                    studentGrades.put(id, studentRows);
+                }
+                studentRows.addItem(row, studentRows.length());
+            }
+            
+            indexGradeRow(row, gradeColumns.assignment(row), grade);
+        }
+    }
+    
+    /*
+     * gradeAt - private helper that returns a GradeRecord containing the
+     * values in the specified row of the specified grade columns.
+     */
+    private GradeRecord gradeAt(GradeColumns columns, int row) {
+        GradeRecord gRecord = new GradeRecord(columns.studentID(row),
+                                              columns.assignment(row),
+                                              columns.grade(row));
+        gRecord.number = row;
+        return gRecord;
     }
     
     /**
-     * printStudents - print the entries in the student table
+     * gradesForAssignment - returns a list of the GradeRecords for the
+     * specified assignment, in the same order as the grade table.  Later
+     * changes to the database do not affect the list.
+     * 
+     * The assignment's list in the assignment index is a PersistentList, so
+     * the result is a snapshot of it that takes O(1) time.  In columnar mode,
+     * the assignment's row numbers are copied while holding the lock, and
+     * the records are then created from a snapshot of the columns.
      */
-    public void printStudents() {
-        System.out.println();
-        System.out.println("id\tlast\t\tfirst");
-        System.out.println("--------------------------------------------");
+    public List gradesForAssignment(String asst) {
+        if (gradeColumns != null) {
+            GradeColumns columns;
+            int[] rows;
+            synchronized (gradeColumns) {
+                int code = gradeColumns.codeOf(asst);
+                if (code < 0 || code >= assignmentRows.length())
+                    return new ArrayList(0);
+                columns = gradeColumns.snapshot();
+                rows = ((IntList) assignmentRows.getItem(code)).toArray();
+            }
+            
+            // The rows are in the order they were added, so the newest
+            // grade is at the end.
+            ArrayList result = new ArrayList(rows.length);
+            for (int i = rows.length - 1; i >= 0; i--)
+                result.addItem(gradeAt(columns, rows[i]), result.length());
+            return result;
+        }
         
-        StudentRecord sRecord;
-        for (int i = 0; i < studentTable.length(); i++)
-        {
-        	sRecord = (StudentRecord) studentTable.getItem(i);
-        	System.out.printf("%d\t%s\t\t%s\n",
-        			sRecord.id,
-        			sRecord.lastName,
-        			sRecord.firstName);
+        synchronized (assignmentIndex) {
+            PersistentList asstGrades = assignmentIndex.get(asst);
+            if (asstGrades == null)
+                return new ArrayList(0);
+            return asstGrades.snapshot();
+        }
+    }
+    
+    /**
+     * queryGrades - returns a GradeCursor over the grades for the specified
+     * assignment, or over all of the grades if asst is null, in the same
+     * order as the grade table (newest first).  The cursor skips the first
+     * offset grades and returns at most limit of them.
+     * 
+     * The cursor reads a snapshot of the grades as they were when it was
+     * created, and it creates each GradeRecord only when next() returns it,
+     * so a page of results never copies the whole table.  In columnar mode
+     * it finds its starting point directly, so a page takes O(log n + limit)
+     * time wherever it starts.  Otherwise it skips to its starting point one
+     * record at a time, without creating anything.
+     */
+    public GradeCursor queryGrades(String asst, int offset, int limit) {
+        if (offset < 0 || limit < 0)
+            throw new IllegalArgumentException("offset and limit must not be negative");
+        return new GradeCursor(asst, Integer.MAX_VALUE, offset, limit);
+    }
+    
+    /**
+     * queryGrades - returns a GradeCursor that resumes a query at the point
+     * given by a token that GradeCursor.token() returned.  The cursor returns
+     * at most limit of the grades for the specified assignment (or of all of
+     * the grades, if asst is null) that come after that point.
+     * 
+     * Because grades are never removed and new grades are added at the front
+     * of the table, the token refers to the same point however many grades
+     * have been added since it was created: the next page starts where the
+     * last one stopped, rather than shifting the way an offset would.
+     * Throws an IllegalArgumentException if the token is not valid.
+     * 
+     * In columnar mode the cursor finds the token's point with a binary
+     * search.  With RECORDS storage, however, the grade table and the
+     * assignment lists are linked lists with no index on the grade number,
+     * so the cursor walks to the point from the newest grade, and resuming
+     * takes time proportional to the number of grades (for the assignment,
+     * if one is given) that are newer than the point, though it creates no
+     * records along the way.  Paging deep into a large table is therefore
+     * much faster in COLUMNS or OFF_HEAP mode.
+     */
+    public GradeCursor queryGrades(String asst, String token, int limit) {
+        if (limit < 0)
+            throw new IllegalArgumentException("limit must not be negative");
+        return new GradeCursor(asst, parseToken(token), 0, limit);
+    }
+    
+    // prefix of the tokens returned by GradeCursor.token()
+    private static final String TOKEN_PREFIX = "g";
+    
+    /*
+     * parseToken - private helper that returns the grade number in a token.
+     */
+    private static int parseToken(String token) {
+        if (token == null || !token.startsWith(TOKEN_PREFIX))
+            throw new IllegalArgumentException("invalid token: " + token);
+        try {
+            int before = Integer.parseInt(token.substring(TOKEN_PREFIX.length()));
+            if (before < 0)
+                throw new IllegalArgumentException("invalid token: " + token);
+            return before;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid token: " + token);
+        }
+    }
+    
+    /**
+     * A cursor over a range of the grade table, returned by queryGrades().
+     * Grades are visited newest first, and each one is visited at most once.
+     * A cursor never needs to be closed.
+     * 
+     * Internally, the position is a grade number: the number of grades that
+     * had been added before a given grade.  The cursor returns grades whose
+     * numbers are below a starting point, in decreasing order, and before
+     * is kept just above the number of the next grade it would return.
+     */
+    public class GradeCursor implements Iterator<GradeRecord> {
+        private int remaining;          // # of grades it may still return
+        private int before;             // the next grade's number is < this
+        
+        // In object mode, the records come from an iterator over a snapshot
+        // of a PersistentList, and pending is the next one, or null.
+        private ListIterator records;
+        private GradeRecord pending;
+        
+        // In columnar mode, the rows come from a snapshot of the columns.
+        // If rows is null, every row is a candidate, and the next one is
+        // next; otherwise rows holds the candidates in increasing order,
+        // the next one is rows[next], and moreRows tells whether there were
+        // candidates in front of rows[0] that were not copied.
+        private GradeColumns columns;
+        private int[] rows;
+        private int next;
+        private boolean moreRows;
+        
+        /*
+         * constructor - starts with the first grade for asst whose number is
+         * below start, skipping offset grades.
+         */
+        private GradeCursor(String asst, int start, int offset, int limit) {
+            remaining = limit;
+            if (gradeColumns != null)
+                seekColumns(asst, start, offset, limit);
+            else
+                seekRecords(asst, start, offset);
+        }
+        
+        /*
+         * seekColumns - private helper for the constructor in columnar mode.
+         * Only the row numbers that the cursor can return are copied.
+         */
+        private void seekColumns(String asst, int start, int offset, int limit) {
+            synchronized (gradeColumns) {
+                columns = gradeColumns.snapshot();
+                start = Math.min(start, columns.length());
+                if (asst == null) {
+                    next = (offset < start) ? start - 1 - offset : -1;
+                    before = next + 1;
+                    return;
+                }
+                
+                int code = gradeColumns.codeOf(asst);
+                IntList asstRows = (code < 0 || code >= assignmentRows.length())
+                                   ? new IntList(0)
+                                   : (IntList) assignmentRows.getItem(code);
+                
+                // Find the first row that is not below start.
+                int lo = 0;
+                int hi = asstRows.length();
+                while (lo < hi) {
+                    int mid = (lo + hi) >>> 1;
+                    if (asstRows.getItem(mid) < start)
+                        lo = mid + 1;
+                    else
+                        hi = mid;
+                }
+                
+                int last = lo - 1 - Math.min(offset, lo);
+                int first = Math.max(0, last - Math.min(limit, last + 1) + 1);
+                rows = new int[last - first + 1];
+                for (int i = 0; i < rows.length; i++)
+                    rows[i] = asstRows.getItem(first + i);
+                next = rows.length - 1;
+                moreRows = (first > 0);
+                before = (last >= 0) ? asstRows.getItem(last) + 1 : 0;
+            }
+        }
+        
+        /*
+         * seekRecords - private helper for the constructor in object mode.
+         * The lists have no index on the grade number, so this walks from
+         * the newest grade to the starting point, which takes time
+         * proportional to the number of grades in front of it.
+         */
+        private void seekRecords(String asst, int start, int offset) {
+            List source;
+            if (asst == null) {
+                synchronized (gradeTable) {
+                    source = gradeTable.snapshot();
+                }
+            } else {
+                synchronized (assignmentIndex) {
+                    PersistentList asstGrades = assignmentIndex.get(asst);
+                    source = (asstGrades == null) ? new ArrayList(0)
+                                                  : asstGrades.snapshot();
+                }
+            }
+            
+            records = source.iterator();
+            advance();
+            while (pending != null && pending.number >= start)
+                advance();
+            for (int k = 0; k < offset && pending != null; k++)
+                advance();
+            before = (pending != null) ? pending.number + 1 : 0;
+        }
+        
+        /*
+         * advance - private helper that moves pending to the next record in
+         * object mode.
+         */
+        private void advance() {
+            pending = records.hasNext() ? (GradeRecord) records.next() : null;
+        }
+        
+        /*
+         * hasMoreGrades - private helper that returns true if there are grades
+         * after the current position, whether or not the limit allows the
+         * cursor to return them.
+         */
+        private boolean hasMoreGrades() {
+            if (columns == null)
+                return pending != null;
+            return (next >= 0) || moreRows;
         }
         
+        /**
+         * hasNext - does the cursor have another grade to return?
+         */
+        public boolean hasNext() {
+            if (remaining == 0)
+                return false;
+            if (columns == null)
+                return pending != null;
+            return next >= 0;
+        }
+        
+        /**
+         * next - returns the next grade
+         */
+        public GradeRecord next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            
+            GradeRecord gRecord;
+            if (columns == null) {
+                gRecord = pending;
+                advance();
+            } else {
+                int row = (rows == null) ? next : rows[next];
+                gRecord = gradeAt(columns, row);
+                next--;
+            }
+            before = gRecord.number;
+            remaining--;
+            return gRecord;
+        }
+        
+        /**
+         * token - returns a token that queryGrades() can use to continue the
+         * query after the last grade that this cursor returned, or null if
+         * there were no more grades when the cursor was created.
+         */
+        public String token() {
+            return hasMoreGrades() ? TOKEN_PREFIX + before : null;
+        }
     }
     
     /**
-     * printGrades - print the entries in the grade table
+     * lowestGrades - returns a list of the n lowest grades for the specified
+     * assignment, or among all of the grades if asst is null, from lowest to
+     * highest.  Equal grades are in the same order as the grade table.
+     * 
+     * Rather than sorting all of the grades, this makes one pass over them
+     * and keeps the best n so far in a bounded heap, so it takes O(G log n)
+     * time for G grades and only O(min(n, G)) extra space.
      */
-    public void printGrades() {
-        System.out.println();
-        System.out.println("id\tassignment\tgrade");
-        System.out.println("--------------------------------------------");
+    public List lowestGrades(String asst, int n) {
+        return topGrades(asst, n, true);
+    }
+    
+    /**
+     * highestGrades - returns a list of the n highest grades for the
+     * specified assignment, or among all of the grades if asst is null, from
+     * highest to lowest.  Equal grades are in the same order as the grade
+     * table.  Like lowestGrades(), this uses a bounded heap.
+     */
+    public List highestGrades(String asst, int n) {
+        return topGrades(asst, n, false);
+    }
+    
+    /*
+     * topGrades - private helper that does the work of lowestGrades() and
+     * highestGrades().  The heap is ordered so that its root is the grade
+     * that would be the last one in the result; a grade replaces the root
+     * if it belongs ahead of it.
+     */
+    private List topGrades(String asst, int n, boolean lowest) {
+        if (n < 0)
+            throw new IllegalArgumentException("n must not be negative");
+        
+        Comparator<GradeRecord> resultOrder = (g1, g2) -> {
+            if (g1.grade != g2.grade)
+                return lowest ? Integer.compare(g1.grade, g2.grade)
+                              : Integer.compare(g2.grade, g1.grade);
+            return Integer.compare(g2.number, g1.number);     // newest first
+        };
         
-        GradeRecord gRecord;
-        for (int i = 0; i < gradeTable.length(); i++)
-        {
-        	gRecord = (GradeRecord) gradeTable.getItem(i);
-        	System.out.printf("%d\t%s\t%d\n",
-        			gRecord.studentID,
-        			gRecord.assignment,
-        			gRecord.grade);
+        if (n == 0)
+            return new ArrayList(0);
+        
+        // n may be far larger than the number of grades, so it only bounds
+        // the heap; the heap's initial capacity comes from the grade count.
+        GradeCursor cursor = queryGrades(asst, 0, Integer.MAX_VALUE);
+        int capacity = Math.max(1, Math.min(n, gradeCount()));
+        PriorityQueue<GradeRecord> heap =
+            new PriorityQueue<GradeRecord>(capacity, resultOrder.reversed());
+        while (cursor.hasNext()) {
+            GradeRecord gRecord = cursor.next();
+            if (heap.size() < n) {
+                heap.add(gRecord);
+            } else if (resultOrder.compare(gRecord, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(gRecord);
+            }
         }
         
+        // The heap gives up the grades from last to first.
+        GradeRecord[] sorted = new GradeRecord[heap.size()];
+        for (int i = sorted.length - 1; i >= 0; i--)
+            sorted[i] = heap.poll();
+        ArrayList result = new ArrayList(sorted.length);
+        result.insertAll(sorted, 0);
+        return result;
+    }
+    
+    /*
+     * gradeCount - private helper that returns the number of grades that
+     * have been added so far.
+     */
+    private int gradeCount() {
+        if (gradeColumns != null) {
+            synchronized (gradeColumns) {
+                return gradeColumns.length();
+            }
+        }
+        synchronized (gradeTable) {
+            return gradeTable.length();
+        }
     }
     
     /**
-     * printStudentsGrades - print a "join" of the student and grade
-     * tables.  See the problem set handout for more details.
-     * 
-     * This method is not very time efficient due to the way in which items are added to
-     * the tables. In order to allow for fast updates, items are added to the tables in
-     * the order that they are entered and are not sorted in any way when added. This
-     * sacrifices efficiency in printing for constant time efficiency in making updates.
-     * Users will generally be making many more updates to the tables over the course of
-     * their work, so slowness in making updates will be more frustrating to a user that
-     * has to be active during the process. When printing a report, however, it can be
-     * started and then the user can walk away while it compiles. This, it would make
-     * sense for adding to the tables to be more efficient at the cost of efficiency
-     * when printing.
+     * gradesBetween - returns a list of the grades g with lo <= g <= hi,
+     * ordered by grade from lowest to highest, with equal grades in the same
+     * order as the grade table.  Later changes to the database do not affect
+     * the list.
      */
-    public void printStudentsGrades() {
-        System.out.println();
-        System.out.println("last\t\tfirst\tassignment\tgrade");
-        System.out.println("------------------------------------------------");
+    public List gradesBetween(int lo, int hi) {
+        return gradesBetween(null, lo, hi);
+    }
+    
+    /**
+     * gradesBetween - like gradesBetween(lo, hi), but limited to the grades
+     * for the specified assignment if asst is not null.
+     * 
+     * The grades are found using an ordered index on the grade value, which
+     * keeps the grades with each value together, so this takes O(log d + k)
+     * time for d distinct grade values and k results, rather than a scan of
+     * the grade table.  As in gradesForAssignment(), the lists are read from
+     * snapshots in object mode, and row numbers are copied while holding the
+     * lock in columnar mode.
+     */
+    public List gradesBetween(String asst, int lo, int hi) {
+        if (lo > hi)
+            return new ArrayList(0);
         
-        StudentRecord sRecord;
-        GradeRecord gRecord;
-        ListIterator sIter = studentTable.iterator();
-        
-        while (sIter.hasNext())
-        {
-        	sRecord = (StudentRecord) sIter.next();
-        	ListIterator gIter = gradeTable.iterator();
-        	while (gIter.hasNext())
-        	{
-        		gRecord = (GradeRecord) gIter.next();
-        		if (sRecord.id == gRecord.studentID) {
-        			System.out.printf("%s\t\t%s\t%s\t%d\n",
-        					sRecord.lastName,
-        					sRecord.firstName,
-        					gRecord.assignment,
-        					gRecord.grade);
-        		}
-        	}
+        if (gradeColumns != null) {
+            GradeColumns columns;
+            int[] rows;
+            synchronized (gradeColumns) {
+                TreeMap<Integer, Object> index = (asst == null) ? gradeIndex
+                                                 : asstGradeIndex.get(asst);
+                if (index == null)
+                    return new ArrayList(0);
+                Collection<Object> buckets = index.subMap(lo, true, hi, true).values();
+                
+                int count = 0;
+                for (Object bucket : buckets)
+                    count += ((IntList) bucket).length();
+                rows = new int[count];
+                
+                // Each bucket's rows are oldest first, so they are copied in
+                // reverse to put the newest grade first.
+                int k = 0;
+                for (Object bucket : buckets) {
+                    IntList bucketRows = (IntList) bucket;
+                    for (int i = bucketRows.length() - 1; i >= 0; i--)
+                        rows[k++] = bucketRows.getItem(i);
+                }
+                columns = gradeColumns.snapshot();
+            }
+            
+            ArrayList result = new ArrayList(rows.length);
+            for (int i = 0; i < rows.length; i++)
+                result.addItem(gradeAt(columns, rows[i]), i);
+            return result;
         }
         
-        /*
-        for (int i = 0; i < studentTable.length(); i++)
-        {
-        	sRecord = (StudentRecord) studentTable.getItem(i);
-        	for (int j = 0; j < gradeTable.length(); j++) 
-        	{
-        		gRecord = (GradeRecord) gradeTable.getItem(j);
-        		if (sRecord.id == gRecord.studentID) 
-        		{
-        			System.out.printf("%s\t\t%s\t%s\t%d\n",
-        					sRecord.lastName,
-        					sRecord.firstName,
-        					gRecord.assignment,
-        					gRecord.grade);
-        		}
-        	}
-        }
-        */
+        ArrayList snapshots = new ArrayList();
+        synchronized (gradeIndex) {
+            TreeMap<Integer, Object> index = (asst == null) ? gradeIndex
+                                             : asstGradeIndex.get(asst);
+            if (index == null)
+                return new ArrayList(0);
+            for (Object bucket : index.subMap(lo, true, hi, true).values())
+                snapshots.addItem(((PersistentList) bucket).snapshot(),
+                                  snapshots.length());
+        }
         
+        ArrayList result = new ArrayList();
+        for (int i = 0; i < snapshots.length(); i++)
+            result.addAll((List) snapshots.getItem(i), result.length());
+        return result;
     }
     
-    public static void main(String[] args) {
-        Scanner in = new Scanner(System.in);
+    /**
+     * failingGrades - returns a list of the grades that are below the
+     * specified threshold, in the same order as gradesBetween().  This uses
+     * the ordered grade index, so it takes O(log d + k) time.
+     */
+    public List failingGrades(int threshold) {
+        return failingGrades(null, threshold);
+    }
+    
+    /**
+     * failingGrades - like failingGrades(threshold), but limited to the
+     * grades for the specified assignment if asst is not null
+     */
+    public List failingGrades(String asst, int threshold) {
+        if (threshold == Integer.MIN_VALUE)
+            return new ArrayList(0);
+        return gradesBetween(asst, Integer.MIN_VALUE, threshold - 1);
+    }
+    
+    // # of records that the bulk loaders collect before inserting them
+    private static final int LOAD_BATCH_SIZE = 4096;
+    
+    /**
+     * addStudents - adds the students described by the arrays, as if
+     * addStudent(ids[k], lasts[k], firsts[k]) were called for each k in
+     * turn, so the last student in the arrays ends up first in the table.
+     * 
+     * The whole batch is checked before anything is added: an
+     * IllegalArgumentException is thrown, and no student is added, if the
+     * arrays have different lengths or if any id is already in use or
+     * appears twice in the batch.  The index is then updated and the records
+     * are linked into the student table with one insertAll(), and if
+     * durability is enabled, the batch is written to the log as one record.
+     */
+    public void addStudents(int[] ids, String[] lasts, String[] firsts) {
+        if (lasts.length != ids.length || firsts.length != ids.length)
+            throw new IllegalArgumentException("arrays must have the same length");
+        insertStudentBatch(ids, lasts, firsts, ids.length);
+    }
+    
+    /**
+     * addGrades - adds the grades described by the arrays, as if
+     * addGrade(ids[k], assts[k], grades[k]) were called for each k in turn.
+     * Throws an IllegalArgumentException, and adds nothing, if the arrays
+     * have different lengths or any of the assignment names is null.
+     * 
+     * As in addStudents(), the records are linked into the grade table with
+     * one insertAll(), the assignment index is updated while holding its
+     * lock once, and the batch is logged as one record.
+     */
+    public void addGrades(int[] ids, String[] assts, int[] grades) {
+        if (assts.length != ids.length || grades.length != ids.length)
+            throw new IllegalArgumentException("arrays must have the same length");
+        insertGradeBatch(ids, assts, grades, ids.length);
+    }
+    
+    /*
+     * insertStudentBatch - private helper that adds the first count students
+     * described by the arrays, as if addStudent() were called for each of
+     * them in turn.  All of the ids are checked before anything is added, and
+     * the records are then added to the student table in a single insertAll().
+     * Throws an IllegalArgumentException if any id is already in use or
+     * appears twice in the batch.  If durability is enabled, the batch is
+     * logged as a single record.
+     */
+    private void insertStudentBatch(int[] ids, String[] lasts, String[] firsts,
+                                    int count) {
+        if (count == 0)
+            return;
+        
+        byte[] record = (log == null) ? null
+                        : studentBatchLogRecord(ids, lasts, firsts, count);
+        long seq;
+        beginChange();
+        try {
+            checkStudentBatch(ids, count);
+            seq = logChange(record);
+            linkStudentBatch(ids, lasts, firsts, count);
+        } finally {
+            endChange();
+        }
+        awaitDurable(seq);
+    }
+    
+    /*
+     * checkStudentBatch - private helper that throws an
+     * IllegalArgumentException if any of the first count ids is already in
+     * use or appears twice among them.
+     */
+    private void checkStudentBatch(int[] ids, int count) {
+        IntHashMap batchIds = new IntHashMap(count);
+        synchronized (offHeapStudents != null ? offHeapStudents : studentIndex) {
+            for (int k = 0; k < count; k++) {
+                if (hasStudent(ids[k])
+                        || batchIds.put(ids[k], Boolean.TRUE) != null)
+                    throw new IllegalArgumentException("duplicate student id: "
+                                                       + ids[k]);
+            }
+        }
+    }
+    
+    /*
+     * linkStudentBatch - private helper that does the work of
+     * insertStudentBatch() without checking or logging it.  The caller must
+     * have checked the ids with checkStudentBatch().
+     */
+    private void linkStudentBatch(int[] ids, String[] lasts, String[] firsts,
+                                  int count) {
+        if (offHeapStudents != null) {
+            synchronized (offHeapStudents) {
+                for (int k = 0; k < count; k++)
+                    offHeapStudents.add(ids[k], lasts[k], firsts[k]);
+            }
+            return;
+        }
+        
+        StudentRecord[] records = new StudentRecord[count];
+        synchronized (studentIndex) {
+            // addStudent() adds at the front, so the last student in the
+            // batch ends up first in the table.
+            for (int k = 0; k < count; k++) {
+                StudentRecord sRecord = new StudentRecord(ids[k],
+                                                          namePool.intern(lasts[k]),
+                                                          namePool.intern(firsts[k]));
+                studentIndex.put(ids[k], sRecord);
+                records[count - 1 - k] = sRecord;
+            }
+            changeTable(studentTable, () -> studentTable.insertAll(records, 0));
+        }
+    }
+    
+    /*
+     * insertGradeBatch - private helper that adds the first count grades
+     * described by the arrays, as if addGrade() were called for each of them
+     * in turn.  The records are added to the grade table in a single
+     * insertAll(), and the assignment index is updated while holding its
+     * lock only once.  As in insertStudentBatch(), every row is checked
+     * before anything is added, and the batch is logged as a single record
+     * if durability is enabled.  Throws an IllegalArgumentException if any
+     * of the assignment names is null.
+     */
+    private void insertGradeBatch(int[] ids, String[] assts, int[] grades,
+                                  int count) {
+        if (count == 0)
+            return;
+        for (int k = 0; k < count; k++)
+            checkAssignment(assts[k]);
+        
+        byte[] record = (log == null) ? null
+                        : gradeBatchLogRecord(ids, assts, grades, count);
+        long seq;
+        beginChange();
+        try {
+            seq = logChange(record);
+            linkGradeBatch(ids, assts, grades, count);
+        } finally {
+            endChange();
+        }
+        awaitDurable(seq);
+    }
+    
+    /*
+     * linkGradeBatch - private helper that does the work of
+     * insertGradeBatch() without checking or logging it.
+     */
+    private void linkGradeBatch(int[] ids, String[] assts, int[] grades,
+                                int count) {
+        if (gradeColumns != null) {
+            synchronized (gradeColumns) {
+                for (int k = 0; k < count; k++)
+                    addColumnarGrade(ids[k], assts[k], grades[k]);
+            }
+            return;
+        }
+        
+        GradeRecord[] records = new GradeRecord[count];
+        for (int k = 0; k < count; k++) {
+            records[count - 1 - k] = new GradeRecord(ids[k],
+                                                     assignmentPool.intern(assts[k]),
+                                                     grades[k]);
+        }
+        synchronized (gradeTable) {
+            int number = gradeTable.length();
+            for (int k = 0; k < count; k++)
+                records[count - 1 - k].number = number + k;
+            gradeTable.insertAll(records, 0);
+        }
+        
+        synchronized (assignmentIndex) {
+            for (int k = count - 1; k >= 0; k--) {
+                GradeRecord gRecord = records[k];
+                PersistentList asstGrades = assignmentIndex.get(gRecord.assignment);
+                if (asstGrades == null) {
+                    asstGrades = new PersistentList();
+                    assignmentIndex.put(gRecord.assignment, asstGrades);
+                }
+                addByNumber(asstGrades, gRecord);
+            }
+        }
+        
+        synchronized (studentGrades) {
+            for (int k = count - 1; k >= 0; k--)
+                addStudentGrade(records[k]);
+        }
+        
+        synchronized (gradeIndex) {
+            for (int k = count - 1; k >= 0; k--)
+                indexGradeValue(records[k]);
+        }
+    }
+    
+    /**
+     * loadStudents - adds the students in the specified file, which has one
+     * student per line in the form "id<TAB>last<TAB>first" (commas may be
+     * used instead of tabs).  A first line that does not start with an id is
+     * treated as a header and skipped.  The students are added in the order
+     * in which they appear, as if addStudent() were called for each one.
+     * Returns the number of students added.
+     * 
+     * The file is memory-mapped and parsed by a MappedRecordReader, and the
+     * students are added in batches.  If a line is malformed, an IOException
+     * is thrown, and the students in earlier batches remain in the database.
+     * As in addStudent(), the names are replaced by pooled Strings, so the
+     * Strings made while parsing a batch are garbage once it is added.
+     */
+    public int loadStudents(Path file) throws IOException {
+        int[] ids = new int[LOAD_BATCH_SIZE];
+        String[] lasts = new String[LOAD_BATCH_SIZE];
+        String[] firsts = new String[LOAD_BATCH_SIZE];
+        int count = 0;
+        int total = 0;
+        
+        try (MappedRecordReader reader = new MappedRecordReader(file)) {
+            while (reader.nextRecord()) {
+                if (reader.lineNumber() == 1 && !reader.nextFieldIsInt())
+                    continue;
+                
+                ids[count] = reader.readInt();
+                lasts[count] = reader.readString();
+                firsts[count] = reader.readString();
+                count++;
+                if (count == LOAD_BATCH_SIZE) {
+                    insertStudentBatch(ids, lasts, firsts, count);
+                    total += count;
+                    count = 0;
+                }
+            }
+        }
+        
+        insertStudentBatch(ids, lasts, firsts, count);
+        return total + count;
+    }
+    
+    /**
+     * loadGrades - adds the grades in the specified file, which has one grade
+     * per line in the form "id<TAB>assignment<TAB>grade" (commas may be used
+     * instead of tabs).  A first line that does not start with an id is
+     * treated as a header and skipped.  The grades are added in the order in
+     * which they appear, as if addGrade() were called for each one.  Returns
+     * the number of grades added.
+     * 
+     * As in loadStudents(), the file is memory-mapped and the grades are added
+     * in batches.  Each distinct assignment name is decoded only once, and
+     * the records refer to the pooled copy of it.
+     */
+    public int loadGrades(Path file) throws IOException {
+        int[] ids = new int[LOAD_BATCH_SIZE];
+        String[] assts = new String[LOAD_BATCH_SIZE];
+        int[] grades = new int[LOAD_BATCH_SIZE];
+        int count = 0;
+        int total = 0;
+        
+        try (MappedRecordReader reader = new MappedRecordReader(file)) {
+            while (reader.nextRecord()) {
+                if (reader.lineNumber() == 1 && !reader.nextFieldIsInt())
+                    continue;
+                
+                ids[count] = reader.readInt();
+                assts[count] = reader.readCachedString();
+                grades[count] = reader.readInt();
+                count++;
+                if (count == LOAD_BATCH_SIZE) {
+                    insertGradeBatch(ids, assts, grades, count);
+                    total += count;
+                    count = 0;
+                }
+            }
+        }
+        
+        insertGradeBatch(ids, assts, grades, count);
+        return total + count;
+    }
+    
+    /**
+     * enableDurability - makes the database durable, using the write-ahead
+     * log and snapshots in the specified directory, which is created if it
+     * does not exist.  The state saved there is first recovered into this
+     * database, which must be empty.  From then on, every change is logged
+     * before the method that made it returns, and is forced to disk
+     * according to the specified policy.  This must be called before the
+     * database is shared with other threads.
+     */
+    public void enableDurability(Path dir, GradeLog.SyncPolicy policy)
+            throws IOException {
+        enableDurability(dir, policy, DEFAULT_SYNC_INTERVAL_MILLIS,
+                         DEFAULT_SNAPSHOT_THRESHOLD);
+    }
+    
+    /**
+     * enableDurability - like the two-argument version, but with the
+     * interval used by the INTERVAL policy and the size of log segment
+     * that triggers a new snapshot.  Because each snapshot replaces the
+     * log before it, recovery reads one snapshot and at most about
+     * snapshotThreshold bytes of log, no matter how long the history is.
+     */
+    public void enableDurability(Path dir, GradeLog.SyncPolicy policy,
+                                 long syncIntervalMillis,
+                                 long snapshotThreshold) throws IOException {
+        if (log != null)
+            throw new IllegalStateException("durability is already enabled");
+        if (studentTable.length() != 0 || gradeTable.length() != 0)
+            throw new IllegalStateException("database must be empty");
+        
+        GradeLog opened = new GradeLog(dir, policy, syncIntervalMillis,
+                                       this::readSnapshot,
+                                       this::replayLogRecord);
+        long replayed = opened.replayedBytes();
+        log = opened;
+        this.snapshotThreshold = snapshotThreshold;
+        if (replayed > snapshotThreshold)
+            snapshot();
+    }
+    
+    /**
+     * snapshot - writes a snapshot of both tables and discards the log
+     * records that it makes unnecessary.  The snapshot is written from a
+     * ReadView, so changes are blocked only while the view is opened and
+     * the log is started on a new segment.
+     *
+     * If a snapshot taken in the background has failed since the last
+     * call, this throws that failure instead, without writing a snapshot;
+     * calling it again then tries again.
+     */
+    public void snapshot() throws IOException {
+        if (log == null)
+            throw new IllegalStateException("durability is not enabled");
+        
+        synchronized (snapshotLock) {
+            IOException failure = takeSnapshotFailure();
+            if (failure != null)
+                throw failure;
+            takeSnapshot();
+            logLock.lock();
+            try {
+                snapshotDelayNanos = 0;
+            } finally {
+                logLock.unlock();
+            }
+        }
+    }
+    
+    /*
+     * takeSnapshot - private helper that does the work of snapshot().
+     * The caller must hold snapshotLock.
+     */
+    private void takeSnapshot() throws IOException {
+        ReadView view;
+        long n;
+        logLock.lock();
+        try {
+            view = openView();
+            try {
+                n = log.roll();
+            } catch (IOException e) {
+                view.close();
+                throw e;
+            }
+        } finally {
+            logLock.unlock();
+        }
+        try {
+            log.writeSnapshot(n, out -> writeSnapshot(view, out));
+        } finally {
+            view.close();
+        }
+    }
+    
+    /**
+     * close - forces any logged changes to disk and closes the log, after
+     * waiting for a snapshot that is being written.  If a snapshot taken
+     * in the background has failed and has not been reported by
+     * snapshot(), the log is still closed, and the failure is then thrown.
+     * Does nothing if durability is not enabled.
+     */
+    public void close() throws IOException {
+        if (log != null) {
+            synchronized (snapshotLock) {
+                logLock.lock();
+                try {
+                    log.close();
+                } finally {
+                    logLock.unlock();
+                }
+                IOException failure = takeSnapshotFailure();
+                if (failure != null)
+                    throw failure;
+            }
+        }
+    }
+    
+    /*
+     * takeSnapshotFailure - private helper that returns the failure of a
+     * background snapshot that has not been reported yet, if any, and
+     * clears it, so that it is reported only once.
+     */
+    private IOException takeSnapshotFailure() {
+        logLock.lock();
+        try {
+            IOException failure = snapshotFailure;
+            snapshotFailure = null;
+            return failure;
+        } finally {
+            logLock.unlock();
+        }
+    }
+    
+    /*
+     * beginChange and endChange - private helpers that acquire and release
+     * the locks that every change is made under: logLock if durability is
+     * enabled, and the read lock of viewLock.
+     */
+    private void beginChange() {
+        if (log != null)
+            logLock.lock();
+        viewLock.readLock().lock();
+    }
+    
+    private void endChange() {
+        viewLock.readLock().unlock();
+        if (log != null)
+            logLock.unlock();
+    }
+    
+    /*
+     * logChange - private helper that appends the specified record to the
+     * log and returns its sequence number, or does nothing and returns 0 if
+     * durability is not enabled.  The caller must hold logLock, and must
+     * have checked that the change can be made but not yet made it, so that
+     * if the append fails, the change is neither logged nor made.
+     */
+    private long logChange(byte[] record) {
+        if (log == null)
+            return 0;
+        try {
+            return log.append(record);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    /*
+     * awaitDurable - private helper that waits until the log record with
+     * the specified sequence number is durable, as the sync policy defines
+     * it, and then starts a snapshot in the background if the log has
+     * grown too large, unless one is running or the last one failed too
+     * recently.  Does nothing if durability is not enabled.
+     */
+    private void awaitDurable(long seq) {
+        if (log == null)
+            return;
+        try {
+            log.awaitDurable(seq);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        
+        if (log.segmentBytes() < snapshotThreshold)
+            return;
+        logLock.lock();
+        try {
+            if (snapshotRunning)
+                return;
+            if (snapshotDelayNanos > 0
+                    && System.nanoTime() - snapshotFailedAt < snapshotDelayNanos)
+                return;
+            snapshotRunning = true;
+        } finally {
+            logLock.unlock();
+        }
+        Thread snapshotter = new Thread(this::runSnapshotter,
+                                        "GradeDatabase snapshot");
+        snapshotter.setDaemon(true);
+        snapshotter.start();
+    }
+    
+    /*
+     * runSnapshotter - private helper that is run by the thread that
+     * awaitDurable() starts.  It writes a snapshot and records whether it
+     * succeeded, all while holding snapshotLock, so that a snapshot() or
+     * close() that waits for it sees its failure.  The log is still intact
+     * after a failure, so a later write will try again once the delay has
+     * passed.
+     */
+    private void runSnapshotter() {
+        synchronized (snapshotLock) {
+            boolean written = false;
+            IOException failure = null;
+            try {
+                takeSnapshot();
+                written = true;
+            } catch (IOException e) {
+                failure = e;
+            } finally {
+                logLock.lock();
+                try {
+                    snapshotRunning = false;
+                    if (written) {
+                        snapshotDelayNanos = 0;
+                    } else {
+                        if (snapshotFailure == null)
+                            snapshotFailure = failure;
+                        snapshotDelayNanos = Math.min(
+                                Math.max(2 * snapshotDelayNanos, MIN_SNAPSHOT_DELAY_NANOS),
+                                MAX_SNAPSHOT_DELAY_NANOS);
+                        snapshotFailedAt = System.nanoTime();
+                    }
+                } finally {
+                    logLock.unlock();
+                }
+            }
+        }
+    }
+    
+    /*
+     * studentLogRecord and gradeLogRecord - private helpers that encode a
+     * change as a log record: a type byte followed by the arguments of the
+     * method that made the change.
+     */
+    private static byte[] studentLogRecord(byte type, int id, String last,
+                                           String first) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeByte(type);
+            out.writeInt(id);
+            if (type != LOG_REMOVE_STUDENT) {
+                writeString(out, last);
+                writeString(out, first);
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+        return bytes.toByteArray();
+    }
+    
+    private static byte[] gradeLogRecord(int id, String asst, int grade) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeByte(LOG_ADD_GRADE);
+            out.writeInt(id);
+            writeString(out, asst);
+            out.writeInt(grade);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+        return bytes.toByteArray();
+    }
+    
+    /*
+     * studentBatchLogRecord and gradeBatchLogRecord - private helpers that
+     * encode the first count entries of a batch as a single log record: a
+     * type byte and the count, followed by the entries.  In a batch of
+     * grades, each distinct assignment name is written once, and the grades
+     * refer to it by number.
+     */
+    private static byte[] studentBatchLogRecord(int[] ids, String[] lasts,
+                                                String[] firsts, int count) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 * count + 8);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeByte(LOG_ADD_STUDENTS);
+            out.writeInt(count);
+            for (int k = 0; k < count; k++) {
+                out.writeInt(ids[k]);
+                writeString(out, lasts[k]);
+                writeString(out, firsts[k]);
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+        return bytes.toByteArray();
+    }
+    
+    private static byte[] gradeBatchLogRecord(int[] ids, String[] assts,
+                                              int[] grades, int count) {
+        HashMap<String, Integer> codes = new HashMap<String, Integer>();
+        ArrayList names = new ArrayList();
+        int[] rowCodes = new int[count];
+        for (int k = 0; k < count; k++) {
+            Integer code = codes.get(assts[k]);
+            if (code == null) {
+                code = names.length();
+                codes.put(assts[k], code);
+                names.addItem(assts[k], code);
+            }
+            rowCodes[k] = code;
+        }
+        
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(12 * count + 64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeByte(LOG_ADD_GRADES);
+            out.writeInt(names.length());
+            for (int c = 0; c < names.length(); c++)
+                writeString(out, (String) names.getItem(c));
+            out.writeInt(count);
+            for (int k = 0; k < count; k++) {
+                out.writeInt(ids[k]);
+                out.writeInt(rowCodes[k]);
+                out.writeInt(grades[k]);
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+        return bytes.toByteArray();
+    }
+    
+    /*
+     * writeString and readString - private helpers that write and read a
+     * String that may be null.  Strings are limited to 65535 bytes of
+     * modified UTF-8.
+     */
+    private static void writeString(DataOutputStream out, String s)
+            throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null)
+            out.writeUTF(s);
+    }
+    
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+    
+    /*
+     * replayLogRecord - private helper used during recovery that makes the
+     * change described by a log record, without logging it again.
+     */
+    private void replayLogRecord(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case LOG_ADD_STUDENT:
+                insertStudent(in.readInt(), readString(in), readString(in));
+                break;
+            case LOG_UPDATE_STUDENT:
+                changeStudent(in.readInt(), readString(in), readString(in));
+                break;
+            case LOG_REMOVE_STUDENT:
+                deleteStudent(in.readInt());
+                break;
+            case LOG_ADD_GRADE:
+                insertGrade(in.readInt(), readString(in), in.readInt());
+                break;
+            case LOG_ADD_STUDENTS:
+                replayStudentBatch(in);
+                break;
+            case LOG_ADD_GRADES:
+                replayGradeBatch(in);
+                break;
+            default:
+                throw new IOException("unknown log record type: " + type);
+        }
+    }
+    
+    /*
+     * replayStudentBatch and replayGradeBatch - private helpers for
+     * replayLogRecord() that decode a batch record and add the batch.
+     */
+    private void replayStudentBatch(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        int[] ids = new int[count];
+        String[] lasts = new String[count];
+        String[] firsts = new String[count];
+        for (int k = 0; k < count; k++) {
+            ids[k] = in.readInt();
+            lasts[k] = readString(in);
+            firsts[k] = readString(in);
+        }
+        checkStudentBatch(ids, count);
+        linkStudentBatch(ids, lasts, firsts, count);
+    }
+    
+    private void replayGradeBatch(DataInputStream in) throws IOException {
+        String[] names = new String[in.readInt()];
+        for (int c = 0; c < names.length; c++)
+            names[c] = readString(in);
+        
+        int count = in.readInt();
+        int[] ids = new int[count];
+        String[] assts = new String[count];
+        int[] grades = new int[count];
+        for (int k = 0; k < count; k++) {
+            ids[k] = in.readInt();
+            assts[k] = names[in.readInt()];
+            grades[k] = in.readInt();
+        }
+        linkGradeBatch(ids, assts, grades, count);
+    }
+    
+    /*
+     * writeSnapshot - private helper that writes the contents of the
+     * specified view to a snapshot file.
+     * 
+     * A snapshot holds the students and then the grades, oldest first, so
+     * that adding them in order rebuilds the tables.  The grades' assignment
+     * names are stored once, in a dictionary, and each grade refers to its
+     * name by number.
+     */
+    private void writeSnapshot(ReadView view, DataOutputStream out)
+            throws IOException {
+        out.writeInt(SNAPSHOT_MAGIC);
+        out.writeInt(SNAPSHOT_VERSION);
+        
+        Object[] students = new Object[view.students.length()];
+        ListIterator sIter = view.students.iterator();
+        for (int k = students.length - 1; k >= 0; k--)
+            students[k] = sIter.next();
+        out.writeInt(students.length);
+        for (int k = 0; k < students.length; k++) {
+            StudentRecord sRecord = (StudentRecord) students[k];
+            out.writeInt(sRecord.id);
+            writeString(out, sRecord.lastName);
+            writeString(out, sRecord.firstName);
+        }
+        
+        // gradeRows() numbers the columns oldest first, but a grade table
+        // newest first.
+        GradeRows grades = gradeRows(view);
+        int count = grades.size();
+        boolean oldestFirst = (view.columns != null);
+        HashMap<String, Integer> codes = new HashMap<String, Integer>();
+        ArrayList names = new ArrayList();
+        int[] rowCodes = new int[count];
+        for (int k = 0; k < count; k++) {
+            String asst = grades.assignment(oldestFirst ? k : count - 1 - k);
+            Integer code = codes.get(asst);
+            if (code == null) {
+                code = names.length();
+                codes.put(asst, code);
+                names.addItem(asst, code);
+            }
+            rowCodes[k] = code;
+        }
+        
+        out.writeInt(names.length());
+        for (int c = 0; c < names.length(); c++)
+            writeString(out, (String) names.getItem(c));
+        out.writeInt(count);
+        for (int k = 0; k < count; k++) {
+            int row = oldestFirst ? k : count - 1 - k;
+            out.writeInt(grades.studentID(row));
+            out.writeInt(rowCodes[k]);
+            out.writeInt(grades.grade(row));
+        }
+        
+        out.writeInt(SNAPSHOT_MAGIC);
+    }
+    
+    /*
+     * readSnapshot - private helper used during recovery that adds the
+     * contents of a snapshot written by SnapshotState to the (empty) tables.
+     */
+    private void readSnapshot(DataInputStream in) throws IOException {
+        if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION)
+            throw new IOException("not a grade database snapshot");
+        
+        int[] ids = new int[LOAD_BATCH_SIZE];
+        String[] lasts = new String[LOAD_BATCH_SIZE];
+        String[] firsts = new String[LOAD_BATCH_SIZE];
+        int remaining = in.readInt();
+        while (remaining > 0) {
+            int count = Math.min(remaining, LOAD_BATCH_SIZE);
+            for (int k = 0; k < count; k++) {
+                ids[k] = in.readInt();
+                lasts[k] = readString(in);
+                firsts[k] = readString(in);
+            }
+            linkStudentBatch(ids, lasts, firsts, count);
+            remaining -= count;
+        }
+        
+        String[] names = new String[in.readInt()];
+        for (int c = 0; c < names.length; c++)
+            names[c] = readString(in);
+        
+        String[] assts = new String[LOAD_BATCH_SIZE];
+        int[] grades = new int[LOAD_BATCH_SIZE];
+        remaining = in.readInt();
+        while (remaining > 0) {
+            int count = Math.min(remaining, LOAD_BATCH_SIZE);
+            for (int k = 0; k < count; k++) {
+                ids[k] = in.readInt();
+                assts[k] = names[in.readInt()];
+                grades[k] = in.readInt();
+            }
+            linkGradeBatch(ids, assts, grades, count);
+            remaining -= count;
+        }
+        
+        if (in.readInt() != SNAPSHOT_MAGIC)
+            throw new IOException("snapshot is incomplete");
+    }
+    
+    /*
+     * A private inner class that presents the grade columns as a read-only
+     * List of GradeRecords, so that the reports can use it just like any
+     * other grade table.  As in the other tables, the most recently added
+     * grade is at position 0, so position i is row length - 1 - i.  Each
+     * call to getItem() or next() creates a new GradeRecord.
+     */
+    private class ColumnarGradeTable implements List {
+        private GradeColumns columns;
+        
+        ColumnarGradeTable(GradeColumns columns) {
+            this.columns = columns;
+        }
+        
+        public Object getItem(int i) {
+            int length = columns.length();
+            if (i < 0 || i >= length)
+                throw new IndexOutOfBoundsException();
+            return gradeAt(columns, length - 1 - i);
+        }
+        
+        public boolean addItem(Object item, int i) {
+            throw new UnsupportedOperationException();
+        }
+        
+        public Object removeItem(int i) {
+            throw new UnsupportedOperationException();
+        }
+        
+        public int length() {
+            return columns.length();
+        }
+        
+        public boolean isFull() {
+            return false;
+        }
+        
+        public ListIterator<Object> iterator() {
+            return new ColumnarGradeIterator(columns);
+        }
+        
+        public List snapshot() {
+            return new ColumnarGradeTable(columns.snapshot());
+        }
+    }
+    
+    /*
+     * A private inner class for a read-only iterator over the grade columns,
+     * newest grade first.  Grades added after the iterator was created are
+     * not visited.
+     */
+    private class ColumnarGradeIterator implements ListIterator<Object> {
+        private GradeColumns columns;
+        private int nextRow;      // row of the next grade to visit, or -1
+        private int lastRow;      // row of the first grade visited
+        
+        ColumnarGradeIterator(GradeColumns columns) {
+            this.columns = columns;
+            lastRow = columns.length() - 1;
+            nextRow = lastRow;
+        }
+        
+        public boolean hasNext() {
+            return (nextRow >= 0);
+        }
+        
+        public Object next() {
+            if (nextRow < 0)
+                throw new NoSuchElementException();
+            return gradeAt(columns, nextRow--);
+        }
+        
+        public boolean hasPrevious() {
+            return (nextRow < lastRow);
+        }
+        
+        public Object previous() {
+            if (nextRow >= lastRow)
+                throw new NoSuchElementException();
+            return gradeAt(columns, ++nextRow);
+        }
+        
+        public int nextIndex() {
+            return lastRow - nextRow;
+        }
+        
+        public int previousIndex() {
+            return lastRow - nextRow - 1;
+        }
+        
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+        
+        public void set(Object item) {
+            throw new UnsupportedOperationException();
+        }
+        
+        public void add(Object item) {
+            throw new UnsupportedOperationException();
+        }
+    }
+    
+    /*
+     * A private inner class that presents offHeapStudents as a read-only List
+     * of StudentRecords, newest student first, like the other student tables.
+     * The current table reads offHeapStudents as it is now, and snapshot()
+     * returns a table that reads it as it was then: the records that had
+     * been added, as of the version that was current.  Each call to
+     * getItem() or next() creates a new StudentRecord.
+     */
+    private class OffHeapStudentTable implements List {
+        private int records;      // # of records it covers, or -1 if current
+        private int version;
+        private int length;
+        
+        OffHeapStudentTable() {
+            records = -1;
+        }
+        
+        OffHeapStudentTable(int records, int version, int length) {
+            this.records = records;
+            this.version = version;
+            this.length = length;
+        }
+        
+        public Object getItem(int i) {
+            if (i < 0 || i >= length())
+                throw new IndexOutOfBoundsException();
+            ListIterator<Object> iter = iterator();
+            for (int k = 0; k < i; k++)
+                iter.next();
+            return iter.next();
+        }
+        
+        public boolean addItem(Object item, int i) {
+            throw new UnsupportedOperationException();
+        }
+        
+        public Object removeItem(int i) {
+            throw new UnsupportedOperationException();
+        }
+        
+        public int length() {
+            return (records < 0) ? offHeapStudents.size() : length;
+        }
+        
+        public boolean isFull() {
+            return false;
+        }
+        
+        public ListIterator<Object> iterator() {
+            OffHeapStudentTable table = this;
+            if (records < 0)
+                table = (OffHeapStudentTable) snapshot();
+            return new OffHeapStudentIterator(table.records, table.version);
+        }
+        
+        public List snapshot() {
+            if (records >= 0)
+                return this;
+            synchronized (offHeapStudents) {
+                return new OffHeapStudentTable(offHeapStudents.length(),
+                                               offHeapStudents.version(),
+                                               offHeapStudents.size());
+            }
+        }
+    }
+    
+    /*
+     * A private inner class for a read-only iterator over the first
+     * records of offHeapStudents as of a version, newest first, that skips
+     * the records of students who had been removed by then.
+     */
+    private class OffHeapStudentIterator implements ListIterator<Object> {
+        private int records;      // # of records it covers
+        private int version;
+        private int cursor;       // records >= cursor have been visited
+        private int index;        // # of students visited
+        
+        OffHeapStudentIterator(int records, int version) {
+            this.records = records;
+            this.version = version;
+            cursor = records;
+            index = 0;
+        }
+        
+        /*
+         * nextRecord and previousRecord - private helpers that return the
+         * record that next() or previous() would return, or -1 if none.
+         */
+        private int nextRecord() {
+            for (int r = cursor - 1; r >= 0; r--) {
+                if (offHeapStudents.isPresent(r, version))
+                    return r;
+            }
+            return -1;
+        }
+        
+        private int previousRecord() {
+            for (int r = cursor; r < records; r++) {
+                if (offHeapStudents.isPresent(r, version))
+                    return r;
+            }
+            return -1;
+        }
+        
+        public boolean hasNext() {
+            return (nextRecord() >= 0);
+        }
+        
+        public Object next() {
+            int r = nextRecord();
+            if (r < 0)
+                throw new NoSuchElementException();
+            cursor = r;
+            index++;
+            return studentAt(r, version);
+        }
+        
+        public boolean hasPrevious() {
+            return (previousRecord() >= 0);
+        }
+        
+        public Object previous() {
+            int r = previousRecord();
+            if (r < 0)
+                throw new NoSuchElementException();
+            cursor = r + 1;
+            index--;
+            return studentAt(r, version);
+        }
+        
+        public int nextIndex() {
+            return index;
+        }
+        
+        public int previousIndex() {
+            return index - 1;
+        }
+        
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+        
+        public void set(Object item) {
+            throw new UnsupportedOperationException();
+        }
+        
+        public void add(Object item) {
+            throw new UnsupportedOperationException();
+        }
+    }
+    
+    /*
+     * A private inner class for a consistent, read-only view of both tables
+     * as they were at the moment the view was opened.  The reports read a
+     * view instead of the tables, so they see a single point in time and
+     * need no locks while they run.
+     * 
+     * The view holds a snapshot() of each table, which is taken while
+     * holding the write lock of viewLock.  The records in the snapshots are
+     * not changed while the view is open, because changeStudent() replaces
+     * records rather than changing them when openViews is nonzero, so a view
+     * must be closed when it is no longer needed.
+     */
+    private class ReadView implements AutoCloseable {
+        private List students;
+        private List grades;
+        private GradeColumns columns;     // the grade columns, or null
+        
+        public void close() {
+            viewLock.writeLock().lock();
+            try {
+                openViews--;
+            } finally {
+                viewLock.writeLock().unlock();
+            }
+        }
+    }
+    
+    /*
+     * openView - private helper that opens a ReadView of the current
+     * contents of the tables.  Apart from ReadView.close(), this is the
+     * only place where the write lock of viewLock is held.
+     */
+    private ReadView openView() {
+        ReadView view = new ReadView();
+        viewLock.writeLock().lock();
+        try {
+            view.students = studentTable.snapshot();
+            if (gradeColumns != null) {
+                synchronized (gradeColumns) {
+                    view.columns = gradeColumns.snapshot();
+                }
+                view.grades = new ColumnarGradeTable(view.columns);
+            } else {
+                view.grades = gradeTable.snapshot();
+            }
+            openViews++;
+        } finally {
+            viewLock.writeLock().unlock();
+        }
+        return view;
+    }
+    
+    /*
+     * A private interface for reading the fields of the grade table by row
+     * number, so that the aggregation methods can work the same way in both
+     * storage modes.  Reading a row must be safe from any thread.
+     */
+    private interface GradeRows {
+        int size();
+        int studentID(int row);
+        String assignment(int row);
+        int grade(int row);
+    }
+    
+    /*
+     * gradeRows - private helper that returns a GradeRows for the grades in
+     * the specified view.  In columnar mode it reads the view's columns
+     * directly.  Otherwise, it makes one pass over the view's grade table to
+     * copy the GradeRecord references into an array that can be split up by
+     * index.
+     */
+    private GradeRows gradeRows(ReadView view) {
+        if (view.columns != null) {
+            final GradeColumns columns = view.columns;
+            return new GradeRows() {
+                public int size() { return columns.length(); }
+                public int studentID(int row) { return columns.studentID(row); }
+                public String assignment(int row) { return columns.assignment(row); }
+                public int grade(int row) { return columns.grade(row); }
+            };
+        }
+        
+        final Object[] records = new Object[view.grades.length()];
+        ListIterator gIter = view.grades.iterator();
+        for (int i = 0; i < records.length; i++)
+            records[i] = gIter.next();
+        return new GradeRows() {
+            public int size() { return records.length; }
+            public int studentID(int row) { return ((GradeRecord) records[row]).studentID; }
+            public String assignment(int row) { return ((GradeRecord) records[row]).assignment; }
+            public int grade(int row) { return ((GradeRecord) records[row]).grade; }
+        };
+    }
+    
+    /*
+     * currentGradeRows - private helper that returns a GradeRows for the
+     * grades that are in the database now.  Grades are never changed, so
+     * the view that they are read from can be closed right away.
+     */
+    private GradeRows currentGradeRows() {
+        try (ReadView view = openView()) {
+            return gradeRows(view);
+        }
+    }
+    
+    /**
+     * studentStats - returns a table that maps the id of each student who
+     * has at least one grade to the statistics for that student's grades.
+     * 
+     * The grade table is split into pieces that are summarized in parallel
+     * on all available cores, and the partial results are then merged.
+     */
+    public IntHashMap studentStats() {
+        GradeRows rows = currentGradeRows();
+        return IntStream.range(0, rows.size()).parallel().collect(
+            IntHashMap::new,
+            (stats, row) -> {
+                int id = rows.studentID(row);
+                GradeStats s = (GradeStats) stats.get(id);
+                if (s == null) {
+                    s = new GradeStats();
+                    stats.put(id, s);
+                }
+                s.add(rows.grade(row));
+            },
+            (stats, other) -> {
+                for (int id : other.keys()) {
+                    GradeStats s = (GradeStats) stats.get(id);
+                    if (s == null)
+                        stats.put(id, other.get(id));
+                    else
+                        s.merge((GradeStats) other.get(id));
+                }
+            });
+    }
+    
+    /**
+     * assignmentStats - returns a map from each assignment name to the
+     * statistics for the grades on that assignment.  Like studentStats(),
+     * it summarizes the grade table in parallel.
+     */
+    public HashMap<String, GradeStats> assignmentStats() {
+        GradeRows rows = currentGradeRows();
+        return IntStream.range(0, rows.size()).parallel().collect(
+            HashMap<String, GradeStats>::new,
+            (stats, row) -> {
+                stats.computeIfAbsent(rows.assignment(row), a -> new GradeStats())
+                     .add(rows.grade(row));
+            },
+            (stats, other) -> {
+                for (Map.Entry<String, GradeStats> e : other.entrySet())
+                    stats.merge(e.getKey(), e.getValue(), (s1, s2) -> {
+                        s1.merge(s2);
+                        return s1;
+                    });
+            });
+    }
+    
+    /**
+     * gradeHistogram - returns an array whose element k is the number of
+     * grades g with k * bucketWidth <= g < (k + 1) * bucketWidth.  Negative
+     * grades are counted in element 0.  The array has just enough elements
+     * to cover the highest grade, and is empty if there are no grades.
+     */
+    public long[] gradeHistogram(int bucketWidth) {
+        if (bucketWidth <= 0)
+            throw new IllegalArgumentException("bucket width must be positive");
+        
+        GradeRows rows = currentGradeRows();
+        int maxGrade = IntStream.range(0, rows.size()).parallel()
+                                .map(rows::grade).max().orElse(-1);
+        if (rows.size() == 0)
+            return new long[0];
+        
+        int buckets = Math.max(maxGrade, 0) / bucketWidth + 1;
+        return IntStream.range(0, rows.size()).parallel().collect(
+            () -> new long[buckets],
+            (counts, row) -> counts[Math.max(rows.grade(row), 0) / bucketWidth]++,
+            (counts, other) -> {
+                for (int k = 0; k < buckets; k++)
+                    counts[k] += other[k];
+            });
+    }
+    
+    /*
+     * A private interface for a report that can be written to a Writer, so
+     * that the print methods can share the code that sets up System.out.
+     */
+    private interface Report {
+        void writeTo(Writer out) throws IOException;
+    }
+    
+    /*
+     * printReport - private helper that writes the specified report to
+     * System.out.  System.out is flushed afterwards, but not closed.
+     */
+    private void printReport(Report report) {
+        try {
+            report.writeTo(new OutputStreamWriter(System.out));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    /**
+     * writeAssignmentStats - write the statistics for each assignment, in
+     * order of assignment name, to the specified Writer, which is flushed
+     * but not closed
+     */
+    public void writeAssignmentStats(Writer out) throws IOException {
+        ReportWriter report = new ReportWriter(out);
+        report.println("");
+        report.println("assignment\tcount\tmin\tmax\tavg\tstddev");
+        report.println("------------------------------------------------");
+        
+        // Sort the rows by assignment name, so that the report doesn't
+        // depend on the order of the HashMap.
+        TreeMap<String, GradeStats> stats =
+            new TreeMap<String, GradeStats>(assignmentStats());
+        for (Map.Entry<String, GradeStats> e : stats.entrySet()) {
+            GradeStats s = e.getValue();
+            report.write(e.getKey());
+            report.write("\t\t");
+            report.write(Long.toString(s.getCount()));
+            report.tab();
+            report.writeInt(s.getMin());
+            report.tab();
+            report.writeInt(s.getMax());
+            report.tab();
+            report.writeFixed(s.getAverage(), 2);
+            report.tab();
+            report.writeFixed(s.getStdDev(), 2);
+            report.newline();
+        }
+        report.flush();
+    }
+    
+    /**
+     * printAssignmentStats - print the statistics for each assignment
+     */
+    public void printAssignmentStats() {
+        printReport(this::writeAssignmentStats);
+    }
+    
+    /**
+     * writeStudents - write the entries in the student table to the specified
+     * Writer, which is flushed but not closed.  To write to an OutputStream,
+     * wrap it in an OutputStreamWriter.
+     */
+    public void writeStudents(Writer out) throws IOException {
+        ReportWriter report = new ReportWriter(out);
+        report.println("");
+        report.println("id\tlast\t\tfirst");
+        report.println("--------------------------------------------");
+        
+        try (ReadView view = openView()) {
+            ListIterator sIter = view.students.iterator();
+            while (sIter.hasNext()) {
+                StudentRecord sRecord = (StudentRecord) sIter.next();
+                report.writeInt(sRecord.id);
+                report.tab();
+                report.write(sRecord.lastName);
+                report.write("\t\t");
+                report.write(sRecord.firstName);
+                report.newline();
+            }
+        }
+        report.flush();
+    }
+    
+    /**
+     * printStudents - print the entries in the student table
+     */
+    public void printStudents() {
+        printReport(this::writeStudents);
+    }
+    
+    /**
+     * writeGrades - write the entries in the grade table to the specified
+     * Writer, which is flushed but not closed
+     */
+    public void writeGrades(Writer out) throws IOException {
+        ReportWriter report = new ReportWriter(out);
+        report.println("");
+        report.println("id\tassignment\tgrade");
+        report.println("--------------------------------------------");
+        
+        try (ReadView view = openView()) {
+            ListIterator gIter = view.grades.iterator();
+            while (gIter.hasNext()) {
+                writeGradeRow(report, (GradeRecord) gIter.next());
+            }
+        }
+        report.flush();
+    }
+    
+    /*
+     * writeGradeRow - private helper that writes one line of the
+     * writeGrades() report.
+     */
+    private void writeGradeRow(ReportWriter report, GradeRecord gRecord)
+            throws IOException {
+        report.writeInt(gRecord.studentID);
+        report.tab();
+        report.write(gRecord.assignment);
+        report.tab();
+        report.writeInt(gRecord.grade);
+        report.newline();
+    }
+    
+    /**
+     * printGrades - print the entries in the grade table
+     */
+    public void printGrades() {
+        printReport(this::writeGrades);
+    }
+    
+    /**
+     * writeAssignmentGrades - write the entries in the grade table for the
+     * specified assignment to the specified Writer, which is flushed but not
+     * closed
+     */
+    public void writeAssignmentGrades(String asst, Writer out)
+            throws IOException {
+        ReportWriter report = new ReportWriter(out);
+        report.println("");
+        report.println("id\tgrade");
+        report.println("--------------------------------------------");
+        
+        ListIterator gIter = gradesForAssignment(asst).iterator();
+        while (gIter.hasNext()) {
+            GradeRecord gRecord = (GradeRecord) gIter.next();
+            report.writeInt(gRecord.studentID);
+            report.tab();
+            report.writeInt(gRecord.grade);
+            report.newline();
+        }
+        report.flush();
+    }
+    
+    /**
+     * printAssignmentGrades - print the entries in the grade table for the
+     * specified assignment
+     */
+    public void printAssignmentGrades(String asst) {
+        printReport(out -> writeAssignmentGrades(asst, out));
+    }
+    
+    /**
+     * writeStudentsGrades - write a "join" of the student and grade tables
+     * to the specified Writer, which is flushed but not closed.
+     * 
+     * Students are written in the order of the student table, and each
+     * student's grades are written in the order of the grade table.
+     * 
+     * No join is needed, because addGrade() keeps each student's grades
+     * together in studentGrades: the report walks the student table and
+     * writes out each student's list.  It therefore takes time proportional
+     * to the size of its output, plus the number of students.
+     * 
+     * The student table is read from a ReadView, and each student's grades
+     * are limited to the ones that the view's grade table contains, so the
+     * report shows the tables as they were when it started, and grades can
+     * be added while it runs.
+     */
+    public void writeStudentsGrades(Writer out) throws IOException {
+        ReportWriter report = new ReportWriter(out);
+        report.println("");
+        report.println("last\t\tfirst\tassignment\tgrade");
+        report.println("------------------------------------------------");
+        
+        try (ReadView view = openView()) {
+            int gradeCount = view.grades.length();
+            ListIterator sIter = view.students.iterator();
+            while (sIter.hasNext()) {
+                StudentRecord sRecord = (StudentRecord) sIter.next();
+                if (view.columns != null)
+                    writeStudentRows(report, sRecord, view.columns);
+                else
+                    writeStudentGrades(report, sRecord, gradeCount);
+            }
+        }
+        report.flush();
+    }
+    
+    /**
+     * printStudentsGrades - print a "join" of the student and grade
+     * tables.  See the problem set handout and writeStudentsGrades() for
+     * more details.
+     */
+    public void printStudentsGrades() {
+        printReport(this::writeStudentsGrades);
+    }
+    
+    /*
+     * writeStudentGrades - private helper for writeStudentsGrades() that
+     * writes one line for each of the specified student's grades among the
+     * first gradeCount grades that were added.  The student's list is a
+     * PersistentList, so it is read from a snapshot taken in O(1) time; any
+     * grades added after the view was opened are at its front.
+     */
+    private void writeStudentGrades(ReportWriter report, StudentRecord sRecord,
+                                    int gradeCount) throws IOException {
+        List grades;
+        synchronized (studentGrades) {
+            PersistentList current = (PersistentList) studentGrades.get(sRecord.id);
+            if (current == null)
+                return;
+            grades = current.snapshot();
+        }
+        
+        ListIterator gIter = grades.iterator();
+        while (gIter.hasNext()) {
+            GradeRecord gRecord = (GradeRecord) gIter.next();
+            if (gRecord.number < gradeCount)
+                writeStudentGrade(report, sRecord, gRecord.assignment,
+                                  gRecord.grade);
+        }
+    }
+    
+    /*
+     * writeStudentRows - the columnar version of writeStudentGrades(), which
+     * copies the student's row numbers while holding the lock and then reads
+     * the rows from the view's columns.  Rows past the end of the view were
+     * added after it was opened.
+     */
+    private void writeStudentRows(ReportWriter report, StudentRecord sRecord,
+                                  GradeColumns columns) throws IOException {
+        int[] rows;
+        synchronized (gradeColumns) {
+            rows = studentGradeRows(sRecord.id);
+        }
+        
+        for (int i = 0; i < rows.length; i++) {
+            int row = rows[i];
+            if (row < columns.length())
+                writeStudentGrade(report, sRecord, columns.assignment(row),
+                                  columns.grade(row));
+        }
+    }
+    
+    /*
+     * studentGradeRows - private helper that returns the rows of the grades
+     * for the specified student id, newest first, by following the chain of
+     * rows with OFF_HEAP storage, or else by copying the student's IntList,
+     * whose newest row is at the end.  The caller must hold the gradeColumns
+     * lock.
+     */
+    private int[] studentGradeRows(int id) {
+        if (latestGradeRows != null) {
+            IntList chain = new IntList();
+            for (int row = latestGradeRows.get(id); row >= 0;
+                    row = previousGradeRows.getItem(row))
+                chain.addItem(row, chain.length());
+            return chain.toArray();
+        }
+        
+        IntList current = (IntList) studentGrades.get(id);
+        if (current == null)
+            return new int[0];
+        int[] rows = current.toArray();
+        for (int i = 0, j = rows.length - 1; i < j; i++, j--) {
+            int row = rows[i];
+            rows[i] = rows[j];
+            rows[j] = row;
+        }
+        return rows;
+    }
+    
+    /*
+     * writeStudentGrade - private helper that writes one line of the
+     * writeStudentsGrades() report.
+     */
+    private void writeStudentGrade(ReportWriter report, StudentRecord sRecord,
+                                   String asst, int grade) throws IOException {
+        report.write(sRecord.lastName);
+        report.write("\t\t");
+        report.write(sRecord.firstName);
+        report.tab();
+        report.write(asst);
+        report.tab();
+        report.writeInt(grade);
+        report.newline();
+    }
+    
+    public static void main(String[] args) {
+        Scanner in = new Scanner(System.in);
         String last, first, asst;
         int id, grade, op;
         
         GradeDatabase db = new GradeDatabase();
         
+        // An optional argument names a directory in which the database is
+        // kept between runs.
+        if (args.length > 0) {
+            try {
+                db.enableDurability(Paths.get(args[0]),
+                                    GradeLog.SyncPolicy.EVERY_WRITE);
+            } catch (IOException e) {
+                System.out.println("cannot open " + args[0] + ": " + e.getMessage());
+                return;
+            }
+        }
+        
         while (true) {
             System.out.println();
             System.out.println("(1) Add student");
@@ -210,7 +2804,11 @@ public class GradeDatabase {
                     System.out.print("    first: ");
                     first = in.nextLine();
                     
-                    db.addStudent(id, last, first);
+                    try {
+                        db.addStudent(id, last, first);
+                    } catch (IllegalArgumentException e) {
+                        System.out.println(e.getMessage());
+                    }
                     break;
                 case 2:
                     System.out.print("    student id: ");
@@ -234,6 +2832,11 @@ public class GradeDatabase {
                     db.printStudentsGrades();
                     break;
                 case 6:
+                    try {
+                        db.close();
+                    } catch (IOException e) {
+                        System.out.println(e.getMessage());
+                    }
                     System.exit(0);
                     break;
                 default:
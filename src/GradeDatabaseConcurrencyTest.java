@@ -0,0 +1,231 @@
+import java.io.*;
+import java.util.*;
+
+/*
+ * GradeDatabaseConcurrencyTest - runs graders, student editors and report
+ * readers against one GradeDatabase at the same time, in each storage
+ * mode, and checks that every report sees a consistent point in time and
+ * that no change is lost.  Prints "ok" for each mode that passes, and
+ * throws an exception for the first check that fails.
+ */
+public class GradeDatabaseConcurrencyTest {
+	static final int GRADERS = 8;
+	static final int GRADES_PER_GRADER = 3000;
+	static final int BATCH = 10;
+	static final int EDITORS = 2;
+	static final int STUDENTS_PER_EDITOR = 200;
+	static final int READERS = 3;
+
+	public static void main(String[] args) throws Exception {
+		run("records", new GradeDatabase());
+		run("concurrent lists", new GradeDatabase(new ConcurrentList(),
+		                                          new ConcurrentList()));
+		run("columns", new GradeDatabase(new PersistentList(),
+		                                 GradeDatabase.GradeStorage.COLUMNS));
+		run("off heap", new GradeDatabase(new PersistentList(),
+		                                  GradeDatabase.GradeStorage.OFF_HEAP));
+		run("all off heap", new GradeDatabase(GradeDatabase.GradeStorage.OFF_HEAP));
+	}
+
+	static void run(String mode, GradeDatabase db) throws Exception {
+		ArrayList failures = new ArrayList();
+		Thread[] writers = new Thread[GRADERS + EDITORS];
+
+		// Grader g adds grades 0, 1, 2, ... for student g, in that order,
+		// some of them in batches.  Grade i is for assignment "A" + i % 4.
+		for (int g = 0; g < GRADERS; g++) {
+			final int id = g;
+			writers[g] = new Thread(() -> {
+				int i = 0;
+				while (i < GRADES_PER_GRADER) {
+					if (i % 100 == 50) {
+						int[] ids = new int[BATCH];
+						String[] assts = new String[BATCH];
+						int[] grades = new int[BATCH];
+						for (int k = 0; k < BATCH; k++) {
+							ids[k] = id;
+							assts[k] = "A" + (i + k) % 4;
+							grades[k] = i + k;
+						}
+						db.addGrades(ids, assts, grades);
+						i += BATCH;
+					} else {
+						db.addGrade(id, "A" + i % 4, i);
+						i++;
+					}
+				}
+			});
+		}
+
+		// Editor e adds its students with version 0 of their names, renames
+		// them to versions 1 to 3, and removes every other one.
+		for (int e = 0; e < EDITORS; e++) {
+			final int first = 1000 + e * STUDENTS_PER_EDITOR;
+			writers[GRADERS + e] = new Thread(() -> {
+				for (int s = first; s < first + STUDENTS_PER_EDITOR; s++)
+					db.addStudent(s, "L0", "F0");
+				for (int v = 1; v <= 3; v++) {
+					for (int s = first; s < first + STUDENTS_PER_EDITOR; s++)
+						db.updateStudent(s, "L" + v, "F" + v);
+				}
+				for (int s = first; s < first + STUDENTS_PER_EDITOR; s += 2)
+					db.removeStudent(s);
+			});
+		}
+
+		Thread[] readers = new Thread[READERS];
+		for (int r = 0; r < READERS; r++) {
+			readers[r] = new Thread(() -> {
+				try {
+					while (anyAlive(writers)) {
+						checkGrades(db);
+						checkStudents(db);
+						checkAssignment(db, "A1");
+					}
+				} catch (Throwable t) {
+					synchronized (failures) {
+						failures.addItem(t, failures.length());
+					}
+				}
+			});
+		}
+
+		for (Thread t : writers)
+			t.start();
+		for (Thread t : readers)
+			t.start();
+		for (Thread t : writers)
+			t.join();
+		for (Thread t : readers)
+			t.join();
+		if (failures.length() > 0)
+			throw new RuntimeException(mode + ": " + failures.getItem(0),
+			                           (Throwable) failures.getItem(0));
+
+		// Nothing may be lost once the writers are done.
+		int[] newest = checkGrades(db);
+		for (int g = 0; g < GRADERS; g++)
+			expect(newest[g] == GRADES_PER_GRADER - 1,
+			       mode + ": grader " + g + " ends at " + newest[g]);
+		for (int a = 0; a < 4; a++)
+			expect(db.gradesForAssignment("A" + a).length()
+			           == GRADERS * GRADES_PER_GRADER / 4,
+			       mode + ": wrong number of grades for A" + a);
+		expect(checkStudents(db) == EDITORS * STUDENTS_PER_EDITOR / 2,
+		       mode + ": wrong number of students");
+		System.out.println(mode + " ok");
+	}
+
+	/*
+	 * checkGrades - checks that the grades report shows each grader's
+	 * grades newest first, and that it holds all of a grader's grades up to
+	 * the newest one it shows, as a single point in time must.  Returns the
+	 * newest grade shown for each grader, or -1 if there is none.
+	 */
+	static int[] checkGrades(GradeDatabase db) throws IOException {
+		int[] newest = new int[GRADERS];
+		int[] count = new int[GRADERS];
+		Arrays.fill(newest, -1);
+		for (String[] row : rows(report(db, "grades"), 3)) {
+			int id = Integer.parseInt(row[0]);
+			int grade = Integer.parseInt(row[2]);
+			expect(row[1].equals("A" + grade % 4), "wrong assignment: " + row[1]);
+			if (count[id] == 0)
+				newest[id] = grade;
+			else
+				expect(grade == newest[id] - count[id],
+				       "grader " + id + ": " + grade + " out of order");
+			count[id]++;
+		}
+		for (int g = 0; g < GRADERS; g++)
+			expect(count[g] == newest[g] + 1,
+			       "grader " + g + ": " + count[g] + " grades, newest "
+			       + newest[g]);
+		return newest;
+	}
+
+	/*
+	 * checkStudents - checks that no student appears twice in the students
+	 * report, and that each one's names come from the same version, so no
+	 * rename is seen half done.  Returns the number of students.
+	 */
+	static int checkStudents(GradeDatabase db) throws IOException {
+		HashSet<String> ids = new HashSet<String>();
+		int count = 0;
+		for (String[] row : rows(report(db, "students"), 3)) {
+			expect(ids.add(row[0]), "student " + row[0] + " appears twice");
+			expect(row[1].substring(1).equals(row[2].substring(1)),
+			       "student " + row[0] + " is " + row[1] + " " + row[2]);
+			count++;
+		}
+		return count;
+	}
+
+	/*
+	 * checkAssignment - checks that each grader's grades for an assignment
+	 * come newest first, and that paging through them by token returns
+	 * each of them exactly once.
+	 */
+	static void checkAssignment(GradeDatabase db, String asst) {
+		int[] last = new int[GRADERS];
+		Arrays.fill(last, Integer.MAX_VALUE);
+		ListIterator iter = db.gradesForAssignment(asst).iterator();
+		while (iter.hasNext()) {
+			GradeDatabase.GradeRecord gRecord = (GradeDatabase.GradeRecord) iter.next();
+			int id = gRecord.getStudentID();
+			expect(gRecord.getGrade() < last[id],
+			       asst + ": grader " + id + " out of order");
+			last[id] = gRecord.getGrade();
+		}
+
+		HashSet<String> seen = new HashSet<String>();
+		GradeDatabase.GradeCursor cursor = db.queryGrades(asst, 0, 100);
+		while (true) {
+			while (cursor.hasNext()) {
+				GradeDatabase.GradeRecord gRecord = cursor.next();
+				String key = gRecord.getStudentID() + "/" + gRecord.getGrade();
+				expect(seen.add(key), asst + ": " + key + " returned twice");
+			}
+			String token = cursor.token();
+			if (token == null)
+				break;
+			cursor = db.queryGrades(asst, token, 100);
+		}
+	}
+
+	static String report(GradeDatabase db, String which) throws IOException {
+		StringWriter out = new StringWriter();
+		if (which.equals("grades"))
+			db.writeGrades(out);
+		else
+			db.writeStudents(out);
+		return out.toString();
+	}
+
+	/*
+	 * rows - returns the rows of a report that have the specified number
+	 * of fields, skipping the header.
+	 */
+	static java.util.List<String[]> rows(String report, int fields) {
+		java.util.List<String[]> rows = new java.util.ArrayList<String[]>();
+		for (String line : report.split("\n")) {
+			String[] row = line.trim().split("\t+");
+			if (row.length == fields && !row[0].equals("id"))
+				rows.add(row);
+		}
+		return rows;
+	}
+
+	static boolean anyAlive(Thread[] threads) {
+		for (Thread t : threads) {
+			if (t.isAlive())
+				return true;
+		}
+		return false;
+	}
+
+	static void expect(boolean condition, String message) {
+		if (!condition)
+			throw new RuntimeException(message);
+	}
+}
@@ -0,0 +1,164 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.Arrays;
+
+/*
+ * GradeDatabaseTest - checks GradeDatabase queries whose edge cases are
+ * easy to get wrong, in each storage mode.  Prints "ok" for each check
+ * that passes, and throws an exception for the first one that fails.
+ */
+public class GradeDatabaseTest {
+
+	public static void main(String[] args) throws IOException {
+		for (GradeDatabase.GradeStorage storage : GradeDatabase.GradeStorage.values()) {
+			testHistogram(storage);
+			testStudents(storage);
+		}
+		testSnapshotFailure();
+	}
+
+	/*
+	 * testHistogram - an empty table gives an empty histogram, negative
+	 * grades are counted in the first bucket even when every grade is
+	 * negative, and the last bucket holds the highest grade.
+	 */
+	static void testHistogram(GradeDatabase.GradeStorage storage) {
+		GradeDatabase db = new GradeDatabase(storage);
+		check(db.gradeHistogram(10));
+
+		db.addGrade(1, "hw1", -5);
+		db.addGrade(2, "hw1", -3);
+		check(db.gradeHistogram(10), 2);
+
+		db.addGrade(3, "hw1", 0);
+		db.addGrade(4, "hw1", 25);
+		check(db.gradeHistogram(10), 3, 0, 1);
+		System.out.println(storage + " histogram ok");
+	}
+
+	/*
+	 * testStudents - renamed, removed and re-added students are reported
+	 * as they are now, newest first, along with their grades.  With
+	 * OFF_HEAP storage, the student table is off the heap as well.
+	 */
+	static void testStudents(GradeDatabase.GradeStorage storage) throws IOException {
+		GradeDatabase db = new GradeDatabase(storage);
+		db.addStudent(1, "Lee", "Ann");
+		db.addStudents(new int[] {2, 3}, new String[] {"Kim", "Ng"},
+		               new String[] {"Bo", null});
+		db.addGrade(2, "hw1", 90);
+		db.addGrade(1, "hw1", 80);
+		db.addGrade(2, "hw2", 70);
+		db.updateStudent(2, "Kim-Park", "Bo");
+		db.removeStudent(1);
+		try {
+			db.addStudent(3, "Dup", "Dup");
+			throw new RuntimeException("duplicate id was added");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		db.addStudent(1, "Lee", "Al");
+
+		StringWriter out = new StringWriter();
+		db.writeStudents(out);
+		db.writeStudentsGrades(out);
+		String expected = "\n" + "id\tlast\t\tfirst\n"
+		                  + "--------------------------------------------\n"
+		                  + "1\tLee\t\tAl\n"
+		                  + "3\tNg\t\tnull\n"
+		                  + "2\tKim-Park\t\tBo\n"
+		                  + "\n" + "last\t\tfirst\tassignment\tgrade\n"
+		                  + "------------------------------------------------\n"
+		                  + "Lee\t\tAl\thw1\t80\n"
+		                  + "Kim-Park\t\tBo\thw2\t70\n"
+		                  + "Kim-Park\t\tBo\thw1\t90\n";
+		if (!out.toString().equals(expected))
+			throw new RuntimeException("reported\n" + out + "expected\n" + expected);
+		if (!db.getStudent(2).getLastName().equals("Kim-Park")
+		        || db.getStudent(4) != null)
+			throw new RuntimeException("getStudent() is out of date");
+		System.out.println(storage + " students ok");
+	}
+
+	/*
+	 * testSnapshotFailure - a background snapshot that fails is reported
+	 * by the next snapshot() or close(), and no other one is started until
+	 * some time after the failure.  The snapshots fail because there are
+	 * directories where their temporary files would be written.
+	 */
+	static void testSnapshotFailure() throws IOException {
+		Path dir = Files.createTempDirectory("gradedb");
+		blockSnapshots(dir);
+
+		GradeDatabase db = new GradeDatabase(GradeDatabase.GradeStorage.COLUMNS);
+		db.enableDurability(dir, GradeLog.SyncPolicy.EVERY_WRITE, 100, 1);
+		db.addGrade(1, "hw1", 90);
+		awaitSnapshotter();
+		unblockSnapshots(dir);
+		db.addGrade(2, "hw1", 80);
+		awaitSnapshotter();
+		if (snapshotCount(dir) != 0)
+			throw new RuntimeException("a snapshot was retried right after a failure");
+		try {
+			db.snapshot();
+			throw new RuntimeException("snapshot() did not report the failure");
+		} catch (IOException e) {
+			// expected
+		}
+		db.snapshot();
+		if (snapshotCount(dir) != 1)
+			throw new RuntimeException("snapshot() did not try again");
+		db.close();
+
+		dir = Files.createTempDirectory("gradedb");
+		blockSnapshots(dir);
+		db = new GradeDatabase(GradeDatabase.GradeStorage.COLUMNS);
+		db.enableDurability(dir, GradeLog.SyncPolicy.EVERY_WRITE, 100, 1);
+		db.addGrade(1, "hw1", 90);
+		awaitSnapshotter();
+		try {
+			db.close();
+			throw new RuntimeException("close() did not report the failure");
+		} catch (IOException e) {
+			// expected
+		}
+		System.out.println("snapshot failure ok");
+	}
+
+	static void awaitSnapshotter() {
+		for (Thread t : Thread.getAllStackTraces().keySet()) {
+			if (t.getName().equals("GradeDatabase snapshot")) {
+				try {
+					t.join();
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		}
+	}
+
+	static void blockSnapshots(Path dir) throws IOException {
+		for (int n = 0; n < 10; n++)
+			Files.createDirectory(dir.resolve(String.format("snapshot-%016d.bin.tmp", n)));
+	}
+
+	static void unblockSnapshots(Path dir) throws IOException {
+		for (int n = 0; n < 10; n++)
+			Files.deleteIfExists(dir.resolve(String.format("snapshot-%016d.bin.tmp", n)));
+	}
+
+	static int snapshotCount(Path dir) throws IOException {
+		int count = 0;
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "snapshot-*.bin")) {
+			for (Path file : files)
+				count++;
+		}
+		return count;
+	}
+
+	static void check(long[] actual, long... expected) {
+		if (!Arrays.equals(actual, expected))
+			throw new RuntimeException("histogram " + Arrays.toString(actual)
+			                           + ", expected " + Arrays.toString(expected));
+	}
+}
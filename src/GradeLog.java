@@ -0,0 +1,533 @@
+/*
+ * GradeLog.java
+ *
+ * Computer Science E-22, Harvard University
+ */
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only write-ahead log, together with the snapshot files that
+ * allow old parts of the log to be discarded.
+ *
+ * All files are kept in one directory.  The log is divided into
+ * segments named log-N.wal, where N increases by one each time a new
+ * segment is started.  A snapshot named snapshot-N.bin holds the state
+ * of the database just before the first record of segment N, so
+ * recovery reads the newest snapshot and then replays segment N and any
+ * later segments.
+ *
+ * Each log record is framed by its length and a CRC-32 of its contents.
+ * A crash in the middle of an append leaves a partial record at the end
+ * of the last segment; recovery detects it and truncates it.
+ *
+ * Appended records are collected in memory and written and forced to
+ * disk according to the log's SyncPolicy.
+ *
+ * A lock file keeps two GradeLogs from using the same directory at once.
+ * The constructor takes the lock before it recovers the saved state, so
+ * recovery never truncates or deletes files that another log is using.
+ */
+public class GradeLog implements Closeable {
+    /**
+     * When appended records are forced to disk.
+     */
+    public enum SyncPolicy {
+        /** each append is forced before the writer continues */
+        EVERY_WRITE,
+        /**
+         * writers wait until their record has been forced, but a
+         * background thread forces the records of many writers at once
+         */
+        GROUP_COMMIT,
+        /**
+         * a background thread forces the log at a fixed interval, and
+         * writers do not wait; a crash can lose up to one interval's
+         * worth of records
+         */
+        INTERVAL
+    }
+
+    /**
+     * An interface for objects that receive the records read from a log
+     * segment during recovery.
+     */
+    public interface RecordHandler {
+        void handle(DataInputStream record) throws IOException;
+    }
+
+    private static final String LOG_PREFIX = "log-";
+    private static final String LOG_SUFFIX = ".wal";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+    private static final String LOCK_FILE = "lock";
+    private static final int HEADER_SIZE = 8;      // length and CRC
+
+    private final Path dir;
+    private final SyncPolicy policy;
+    private final long syncIntervalMillis;
+    private FileChannel lockChannel;    // holds a lock on the directory
+    private long replayedBytes;         // # of bytes replayed by recovery
+
+    // The following are protected by ioLock, which must be acquired
+    // before the lock on this object when both are needed.
+    private final Object ioLock = new Object();
+    private FileChannel channel;        // the current segment
+    private long segment;               // the current segment's number
+    private volatile long segmentBytes; // # of bytes written to it
+
+    // The following are protected by the lock on this object.
+    private ByteArrayOutputStream pending;  // records not yet written
+    private long appendedCount;             // # of records appended
+    private long durableCount;              // # of records forced to disk
+    private IOException failure;            // set if a write failed
+    private boolean closed;
+
+    private Thread syncer;              // background thread, or null
+
+    /**
+     * Opens the log in the specified directory, creating the directory if
+     * necessary.  The state already saved there is first recovered: the
+     * newest snapshot, if there is one, is passed to the snapshot reader,
+     * and each record in the segments that follow it is then passed, in
+     * order, to the record handler.  A partial or corrupt record at the end
+     * of the last segment is truncated, and empty segments are deleted.
+     * Finally, a new segment is started after the existing ones.
+     *
+     * Throws an IOException if another GradeLog has the directory open, or
+     * if the saved state cannot be read; the directory is then unlocked.
+     */
+    public GradeLog(Path dir, SyncPolicy policy, long syncIntervalMillis,
+                    SnapshotReader snapshotReader, RecordHandler handler)
+            throws IOException {
+        if (syncIntervalMillis <= 0)
+            throw new IllegalArgumentException("sync interval must be positive");
+        this.dir = dir;
+        this.policy = policy;
+        this.syncIntervalMillis = syncIntervalMillis;
+
+        Files.createDirectories(dir);
+        lockDirectory();
+        try {
+            replayedBytes = recover(snapshotReader, handler);
+        } catch (IOException | RuntimeException e) {
+            lockChannel.close();
+            throw e;
+        }
+
+        long[] segments = listNumbers(dir, LOG_PREFIX, LOG_SUFFIX);
+        long[] snapshots = listNumbers(dir, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+        long last = 0;
+        if (segments.length > 0)
+            last = Math.max(last, segments[segments.length - 1]);
+        if (snapshots.length > 0)
+            last = Math.max(last, snapshots[snapshots.length - 1]);
+        try {
+            openSegment(last + 1);
+        } catch (IOException e) {
+            lockChannel.close();
+            throw e;
+        }
+
+        pending = new ByteArrayOutputStream(1 << 16);
+        appendedCount = 0;
+        durableCount = 0;
+
+        if (policy != SyncPolicy.EVERY_WRITE) {
+            syncer = new Thread(this::runSyncer, "GradeLog syncer");
+            syncer.setDaemon(true);
+            syncer.start();
+        }
+    }
+
+    /*
+     * lockDirectory - private helper method that locks the lock file in the
+     * directory, so that two logs never write to the same directory.
+     */
+    private void lockDirectory() throws IOException {
+        lockChannel = FileChannel.open(dir.resolve(LOCK_FILE),
+                                       StandardOpenOption.CREATE,
+                                       StandardOpenOption.WRITE);
+        boolean locked;
+        try {
+            locked = (lockChannel.tryLock() != null);
+        } catch (java.nio.channels.OverlappingFileLockException e) {
+            locked = false;
+        }
+        if (!locked) {
+            lockChannel.close();
+            throw new IOException(dir + " is already in use");
+        }
+    }
+
+    /*
+     * forceDirectory - private helper method that forces the directory's
+     * entries to disk, so that files that have been created or renamed in
+     * it survive a crash.
+     */
+    private void forceDirectory() throws IOException {
+        try (FileChannel ch = FileChannel.open(dir, StandardOpenOption.READ)) {
+            ch.force(true);
+        }
+    }
+
+    /*
+     * openSegment - private helper method that creates and opens the
+     * segment with the specified number.
+     */
+    private void openSegment(long number) throws IOException {
+        channel = FileChannel.open(segmentPath(dir, number),
+                                   StandardOpenOption.CREATE_NEW,
+                                   StandardOpenOption.WRITE);
+        segment = number;
+        segmentBytes = 0;
+    }
+
+    /*
+     * segmentPath and snapshotPath - private helper methods that return
+     * the names of the files with the specified number.
+     */
+    private static Path segmentPath(Path dir, long number) {
+        return dir.resolve(String.format("%s%016d%s", LOG_PREFIX, number,
+                                         LOG_SUFFIX));
+    }
+
+    private static Path snapshotPath(Path dir, long number) {
+        return dir.resolve(String.format("%s%016d%s", SNAPSHOT_PREFIX,
+                                         number, SNAPSHOT_SUFFIX));
+    }
+
+    /*
+     * listNumbers - private helper method that returns the numbers of the
+     * files in dir with the specified prefix and suffix, in increasing
+     * order.
+     */
+    private static long[] listNumbers(Path dir, String prefix, String suffix)
+            throws IOException {
+        ArrayList numbers = new ArrayList();
+        if (!Files.isDirectory(dir))
+            return new long[0];
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.startsWith(prefix) && name.endsWith(suffix)) {
+                    String digits = name.substring(prefix.length(),
+                                                   name.length() - suffix.length());
+                    try {
+                        numbers.addItem(Long.parseLong(digits), numbers.length());
+                    } catch (NumberFormatException e) {
+                        // not one of ours
+                    }
+                }
+            }
+        }
+
+        long[] result = new long[numbers.length()];
+        for (int i = 0; i < result.length; i++)
+            result[i] = (Long) numbers.getItem(i);
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * append - adds a record with the specified contents to the end of the
+     * log and returns its sequence number, which can be passed to
+     * awaitDurable().  The record is not necessarily on disk yet.
+     */
+    public synchronized long append(byte[] record) throws IOException {
+        if (closed)
+            throw new IOException("log is closed");
+        if (failure != null)
+            throw failure;
+
+        CRC32 crc = new CRC32();
+        crc.update(record, 0, record.length);
+        writeInt(pending, record.length);
+        writeInt(pending, (int) crc.getValue());
+        pending.write(record, 0, record.length);
+
+        appendedCount++;
+        return appendedCount;
+    }
+
+    /*
+     * writeInt - private helper method that writes an int to a byte
+     * stream in big-endian order.
+     */
+    private static void writeInt(ByteArrayOutputStream out, int v) {
+        out.write(v >>> 24);
+        out.write(v >>> 16);
+        out.write(v >>> 8);
+        out.write(v);
+    }
+
+    /**
+     * awaitDurable - waits, if the sync policy calls for it, until the
+     * record with the specified sequence number has been forced to disk.
+     * With the INTERVAL policy this returns immediately.
+     */
+    public void awaitDurable(long seq) throws IOException {
+        if (policy == SyncPolicy.EVERY_WRITE) {
+            sync();
+        } else if (policy == SyncPolicy.GROUP_COMMIT) {
+            synchronized (this) {
+                notifyAll();    // wake the syncer
+                while (durableCount < seq && failure == null && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException();
+                    }
+                }
+                if (failure != null)
+                    throw failure;
+            }
+        }
+    }
+
+    /**
+     * sync - writes all of the appended records to the current segment
+     * and forces them to disk
+     */
+    public void sync() throws IOException {
+        synchronized (ioLock) {
+            byte[] bytes;
+            long count;
+            synchronized (this) {
+                if (failure != null)
+                    throw failure;
+                if (durableCount == appendedCount)
+                    return;
+                bytes = pending.toByteArray();
+                pending.reset();
+                count = appendedCount;
+            }
+
+            try {
+                ByteBuffer buf = ByteBuffer.wrap(bytes);
+                while (buf.hasRemaining())
+                    channel.write(buf);
+                channel.force(false);
+                segmentBytes += bytes.length;
+            } catch (IOException e) {
+                synchronized (this) {
+                    failure = e;
+                    notifyAll();
+                }
+                throw e;
+            }
+
+            synchronized (this) {
+                durableCount = count;
+                notifyAll();
+            }
+        }
+    }
+
+    /*
+     * runSyncer - the body of the background thread used by the
+     * GROUP_COMMIT and INTERVAL policies.  With GROUP_COMMIT it syncs as
+     * soon as there are records that writers are waiting for; with
+     * INTERVAL it syncs once per interval.
+     */
+    private void runSyncer() {
+        while (true) {
+            synchronized (this) {
+                try {
+                    if (policy == SyncPolicy.GROUP_COMMIT) {
+                        while (durableCount == appendedCount && !closed)
+                            wait();
+                    } else if (!closed) {
+                        wait(syncIntervalMillis);
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (closed)
+                    return;
+            }
+
+            try {
+                sync();
+            } catch (IOException e) {
+                return;     // sync() has recorded the failure
+            }
+        }
+    }
+
+    /** segmentBytes - returns the # of bytes written to the current segment */
+    public long segmentBytes() {
+        return segmentBytes;
+    }
+
+    /**
+     * roll - syncs the current segment, closes it and starts a new one.
+     * Returns the number of the new segment, which is also the number
+     * that should be given to the snapshot of the state at this point.
+     * The caller must make sure that no records are appended while this
+     * is running.
+     */
+    public long roll() throws IOException {
+        synchronized (ioLock) {
+            synchronized (this) {
+                if (closed)
+                    throw new IOException("log is closed");
+            }
+            sync();
+            channel.close();
+            openSegment(segment + 1);
+            return segment;
+        }
+    }
+
+    /**
+     * writeSnapshot - creates snapshot number n by calling the specified
+     * writer to write its contents, forces it to disk, and then deletes
+     * the snapshots and segments that it makes unnecessary.  The file is
+     * written under a temporary name and renamed when it is complete, so
+     * a crash never leaves a partial snapshot behind, and the directory is
+     * forced after the rename, so that nothing is deleted until the
+     * snapshot's new name is on disk as well.
+     */
+    public void writeSnapshot(long n, SnapshotWriter writer) throws IOException {
+        Path tmp = dir.resolve(snapshotPath(dir, n).getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                                                StandardOpenOption.TRUNCATE_EXISTING,
+                                                StandardOpenOption.WRITE)) {
+            DataOutputStream data = new DataOutputStream(new BufferedOutputStream(
+                    java.nio.channels.Channels.newOutputStream(out), 1 << 16));
+            writer.write(data);
+            data.flush();
+            out.force(true);
+        }
+        Files.move(tmp, snapshotPath(dir, n), StandardCopyOption.ATOMIC_MOVE);
+        forceDirectory();
+
+        for (long old : listNumbers(dir, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+            if (old < n)
+                Files.deleteIfExists(snapshotPath(dir, old));
+        }
+        for (long old : listNumbers(dir, LOG_PREFIX, LOG_SUFFIX)) {
+            if (old < n)
+                Files.deleteIfExists(segmentPath(dir, old));
+        }
+    }
+
+    /**
+     * An interface for objects that write the contents of a snapshot.
+     */
+    public interface SnapshotWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * An interface for objects that read the contents of a snapshot.
+     */
+    public interface SnapshotReader {
+        void read(DataInputStream in) throws IOException;
+    }
+
+    /** replayedBytes - returns the # of bytes of log records recovered */
+    public long replayedBytes() {
+        return replayedBytes;
+    }
+
+    /*
+     * recover - private helper method for the constructor that reads the
+     * state saved in the directory, which it must already have locked.
+     * Returns the number of bytes of log records that were replayed.
+     */
+    private long recover(SnapshotReader snapshotReader, RecordHandler handler)
+            throws IOException {
+        long[] snapshots = listNumbers(dir, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+        long start = 0;
+        if (snapshots.length > 0) {
+            start = snapshots[snapshots.length - 1];
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    Files.newInputStream(snapshotPath(dir, start)), 1 << 16))) {
+                snapshotReader.read(in);
+            }
+        }
+
+        long replayed = 0;
+        long[] segments = listNumbers(dir, LOG_PREFIX, LOG_SUFFIX);
+        for (int i = 0; i < segments.length; i++) {
+            if (segments[i] >= start)
+                replayed += replaySegment(segmentPath(dir, segments[i]), handler,
+                                          i == segments.length - 1);
+        }
+        return replayed;
+    }
+
+    /*
+     * replaySegment - private helper method that passes each record in the
+     * specified segment to the handler.  If the segment ends with a
+     * partial or corrupt record, it is truncated there if it is the last
+     * segment; otherwise an IOException is thrown.  Returns the number of
+     * bytes replayed.
+     */
+    private static long replaySegment(Path file, RecordHandler handler,
+                                      boolean isLast) throws IOException {
+        long validEnd = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(file), 1 << 16))) {
+            long size = Files.size(file);
+            while (validEnd + HEADER_SIZE <= size) {
+                int length = in.readInt();
+                int crcValue = in.readInt();
+                if (length < 0 || validEnd + HEADER_SIZE + length > size)
+                    break;
+
+                byte[] record = new byte[length];
+                in.readFully(record);
+                CRC32 crc = new CRC32();
+                crc.update(record, 0, length);
+                if ((int) crc.getValue() != crcValue)
+                    break;
+
+                handler.handle(new DataInputStream(new ByteArrayInputStream(record)));
+                validEnd += HEADER_SIZE + length;
+            }
+
+            if (validEnd < size && !isLast)
+                throw new IOException(file + ": corrupt record at offset "
+                                      + validEnd);
+        }
+
+        if (validEnd == 0) {
+            Files.delete(file);
+        } else if (validEnd < Files.size(file)) {
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                ch.truncate(validEnd);
+                ch.force(true);
+            }
+        }
+        return validEnd;
+    }
+
+    /**
+     * close - syncs the log, stops the background thread and closes the
+     * current segment
+     */
+    public void close() throws IOException {
+        try {
+            sync();
+        } finally {
+            synchronized (this) {
+                closed = true;
+                notifyAll();
+            }
+            synchronized (ioLock) {
+                channel.close();
+                lockChannel.close();
+            }
+        }
+    }
+}
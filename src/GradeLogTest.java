@@ -0,0 +1,214 @@
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+
+/*
+ * GradeLogTest - checks that a GradeLog recovers what was appended to it,
+ * including when the last segment ends with a torn or corrupt record.
+ * Prints "ok" for each check that passes, and throws an exception for the
+ * first one that fails.
+ */
+public class GradeLogTest {
+
+	public static void main(String[] args) throws IOException {
+		testRecovery();
+		testTornTail();
+		testCrcMismatch();
+		testCorruptEarlierSegment();
+		testDirectoryLock();
+	}
+
+	/*
+	 * testRecovery - records appended in several runs, with a snapshot in
+	 * between, come back in order after the snapshot.
+	 */
+	static void testRecovery() throws IOException {
+		Path dir = Files.createTempDirectory("gradelog");
+		ArrayList seen = new ArrayList();
+
+		GradeLog log = open(dir, seen);
+		log.append(bytes("a"));
+		log.append(bytes("b"));
+		long n = log.roll();
+		log.writeSnapshot(n, out -> out.writeUTF("snap"));
+		log.append(bytes("c"));
+		log.close();
+
+		log = open(dir, seen);
+		log.append(bytes("d"));
+		log.close();
+
+		open(dir, seen).close();
+		check(seen, "snap", "c", "d");
+		System.out.println("recovery ok");
+	}
+
+	/*
+	 * testTornTail - a partial record at the end of the last segment is
+	 * dropped and truncated, and later appends are recovered after it.
+	 */
+	static void testTornTail() throws IOException {
+		Path dir = Files.createTempDirectory("gradelog");
+		ArrayList seen = new ArrayList();
+
+		GradeLog log = open(dir, seen);
+		log.append(bytes("first"));
+		log.append(bytes("second"));
+		log.close();
+
+		Path segment = lastSegment(dir);
+		long size = Files.size(segment);
+		truncate(segment, size - 3);
+
+		log = open(dir, seen);
+		check(seen, "first");
+		if (Files.size(segment) >= size - 3)
+			throw new RuntimeException("torn record was not truncated");
+		log.append(bytes("third"));
+		log.close();
+
+		open(dir, seen).close();
+		check(seen, "first", "third");
+		System.out.println("torn tail ok");
+	}
+
+	/*
+	 * testCrcMismatch - a record whose contents do not match its CRC ends
+	 * the last segment, along with everything after it.
+	 */
+	static void testCrcMismatch() throws IOException {
+		Path dir = Files.createTempDirectory("gradelog");
+		ArrayList seen = new ArrayList();
+
+		GradeLog log = open(dir, seen);
+		log.append(bytes("good"));
+		log.append(bytes("bad"));
+		log.append(bytes("after"));
+		log.close();
+
+		// The second record starts after the first one's 8-byte header
+		// and its contents; flip a byte in the second one's contents.
+		Path segment = lastSegment(dir);
+		int offset = 8 + bytes("good").length + 8;
+		flipByte(segment, offset);
+
+		open(dir, seen).close();
+		check(seen, "good");
+		System.out.println("crc mismatch ok");
+	}
+
+	/*
+	 * testCorruptEarlierSegment - a corrupt record in a segment that is
+	 * not the last one is reported rather than silently dropped.
+	 */
+	static void testCorruptEarlierSegment() throws IOException {
+		Path dir = Files.createTempDirectory("gradelog");
+		ArrayList seen = new ArrayList();
+
+		GradeLog log = open(dir, seen);
+		log.append(bytes("old"));
+		log.close();
+		Path segment = lastSegment(dir);
+		log = open(dir, seen);
+		log.append(bytes("new"));
+		log.close();
+
+		flipByte(segment, 8);
+		try {
+			open(dir, seen).close();
+			throw new RuntimeException("corrupt segment was not reported");
+		} catch (IOException e) {
+			// expected
+		}
+
+		// The failed open must have released the directory.
+		Files.delete(segment);
+		open(dir, seen).close();
+		check(seen, "new");
+		System.out.println("corrupt earlier segment ok");
+	}
+
+	/*
+	 * testDirectoryLock - a second log cannot open a directory that is in
+	 * use, and does not recover (and so truncate) anything in it.
+	 */
+	static void testDirectoryLock() throws IOException {
+		Path dir = Files.createTempDirectory("gradelog");
+		ArrayList seen = new ArrayList();
+
+		GradeLog log = open(dir, seen);
+		log.append(bytes("kept"));
+		log.sync();
+		Path segment = lastSegment(dir);
+		long size = Files.size(segment);
+
+		ArrayList other = new ArrayList();
+		try {
+			open(dir, other).close();
+			throw new RuntimeException("directory was not locked");
+		} catch (IOException e) {
+			// expected
+		}
+		if (other.length() != 0 || Files.size(segment) != size)
+			throw new RuntimeException("second log touched the directory");
+
+		log.close();
+		open(dir, seen).close();
+		check(seen, "kept");
+		System.out.println("directory lock ok");
+	}
+
+	/*
+	 * open - opens a log in dir, replacing the contents of seen with the
+	 * snapshot and records that it recovers.
+	 */
+	static GradeLog open(Path dir, ArrayList seen) throws IOException {
+		seen.removeRange(0, seen.length());
+		return new GradeLog(dir, GradeLog.SyncPolicy.EVERY_WRITE, 100,
+		                    in -> seen.addItem(in.readUTF(), seen.length()),
+		                    in -> seen.addItem(in.readUTF(), seen.length()));
+	}
+
+	static byte[] bytes(String s) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		new DataOutputStream(bytes).writeUTF(s);
+		return bytes.toByteArray();
+	}
+
+	static void check(ArrayList seen, String... expected) {
+		boolean same = (seen.length() == expected.length);
+		for (int i = 0; same && i < expected.length; i++)
+			same = expected[i].equals(seen.getItem(i));
+		if (!same)
+			throw new RuntimeException("recovered " + seen + ", expected "
+			                           + Arrays.toString(expected));
+	}
+
+	/*
+	 * lastSegment - returns the newest log segment that is not empty.
+	 */
+	static Path lastSegment(Path dir) throws IOException {
+		Path last = null;
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "log-*.wal")) {
+			for (Path file : files) {
+				if (Files.size(file) > 0
+				        && (last == null || file.compareTo(last) > 0))
+					last = file;
+			}
+		}
+		return last;
+	}
+
+	static void truncate(Path file, long size) throws IOException {
+		try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			ch.truncate(size);
+		}
+	}
+
+	static void flipByte(Path file, int offset) throws IOException {
+		byte[] contents = Files.readAllBytes(file);
+		contents[offset] ^= 0x55;
+		Files.write(file, contents);
+	}
+}
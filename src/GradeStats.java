@@ -0,0 +1,123 @@
+/*
+ * GradeStats.java
+ *
+ * Computer Science E-22, Harvard University
+ */
+
+/**
+ * Summary statistics for a group of grades: their count, minimum,
+ * maximum, average and standard deviation.
+ *
+ * Grades are added one at a time with add(), and two GradeStats objects
+ * for disjoint groups of grades can be combined with merge().  This
+ * allows the statistics for a large table to be computed in pieces, in
+ * parallel, and then merged.
+ */
+public class GradeStats {
+    private long count;
+    private long sum;
+    private long sumOfSquares;
+    private int min;
+    private int max;
+
+    /**
+     * Constructs a GradeStats object for an empty group of grades.
+     */
+    public GradeStats() {
+        count = 0;
+        sum = 0;
+        sumOfSquares = 0;
+        min = Integer.MAX_VALUE;
+        max = Integer.MIN_VALUE;
+    }
+
+    /**
+     * add - adds the specified grade to the group
+     */
+    public void add(int grade) {
+        count++;
+        sum += grade;
+        sumOfSquares += (long) grade * grade;
+        if (grade < min)
+            min = grade;
+        if (grade > max)
+            max = grade;
+    }
+
+    /**
+     * merge - adds all of the grades summarized by other to this group
+     */
+    public void merge(GradeStats other) {
+        count += other.count;
+        sum += other.sum;
+        sumOfSquares += other.sumOfSquares;
+        if (other.min < min)
+            min = other.min;
+        if (other.max > max)
+            max = other.max;
+    }
+
+    /** getCount - returns the number of grades in the group */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * getMin - returns the lowest grade in the group.  Throws an
+     * IllegalStateException if the group is empty.
+     */
+    public int getMin() {
+        checkNotEmpty();
+        return min;
+    }
+
+    /**
+     * getMax - returns the highest grade in the group.  Throws an
+     * IllegalStateException if the group is empty.
+     */
+    public int getMax() {
+        checkNotEmpty();
+        return max;
+    }
+
+    /**
+     * getAverage - returns the average of the grades in the group.
+     * Throws an IllegalStateException if the group is empty.
+     */
+    public double getAverage() {
+        checkNotEmpty();
+        return (double) sum / count;
+    }
+
+    /**
+     * getStdDev - returns the (population) standard deviation of the
+     * grades in the group.  Throws an IllegalStateException if the group
+     * is empty.
+     */
+    public double getStdDev() {
+        checkNotEmpty();
+        double mean = (double) sum / count;
+        double variance = (double) sumOfSquares / count - mean * mean;
+        return Math.sqrt(Math.max(variance, 0.0));
+    }
+
+    /*
+     * checkNotEmpty - private helper method that throws an exception if
+     * no grades have been added.
+     */
+    private void checkNotEmpty() {
+        if (count == 0)
+            throw new IllegalStateException("no grades");
+    }
+
+    /**
+     * toString - returns a String of the form
+     * "count=..., min=..., max=..., avg=..., stddev=..."
+     */
+    public String toString() {
+        if (count == 0)
+            return "count=0";
+        return String.format("count=%d, min=%d, max=%d, avg=%.2f, stddev=%.2f",
+                             count, min, max, getAverage(), getStdDev());
+    }
+}
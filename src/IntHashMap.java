@@ -0,0 +1,192 @@
+/*
+ * IntHashMap.java
+ *
+ * Computer Science E-22, Harvard University
+ */
+
+/**
+ * A hash table that maps int keys to Object values.  The keys are stored
+ * directly in an int array, so they are never boxed into Integer
+ * objects.
+ *
+ * The table uses open addressing with linear probing: an entry is stored
+ * in the first empty slot at or after the slot that its key hashes to.
+ * A slot is empty when its value is null, so null values are not
+ * allowed.  The table doubles in size when it becomes half full, which
+ * keeps the probe sequences short, so get(), put() and remove() take
+ * O(1) expected time.
+ */
+public class IntHashMap {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private int[] keys;
+    private Object[] values;    // values[i] == null means slot i is empty
+    private int size;           // # of entries in the table
+    private int mask;           // keys.length - 1; the length is a power of 2
+
+    /**
+     * Constructs an IntHashMap object for a table that is initially empty.
+     */
+    public IntHashMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs an IntHashMap object for a table that is initially empty
+     * and that can hold the specified number of entries before it needs
+     * to grow.
+     */
+    public IntHashMap(int expectedSize) {
+        if (expectedSize < 0)
+            throw new IllegalArgumentException("negative size: "
+                                               + expectedSize);
+        int capacity = DEFAULT_CAPACITY;
+        while (capacity < 2 * expectedSize)
+            capacity *= 2;
+        allocate(capacity);
+    }
+
+    /*
+     * allocate - private helper method that replaces the arrays with
+     * empty arrays of the specified capacity, which must be a power of 2.
+     */
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        size = 0;
+    }
+
+    /*
+     * slotFor - private helper method that returns the slot that the
+     * specified key hashes to.  The multiplication spreads consecutive
+     * keys (such as student IDs) across the whole table.
+     */
+    private int slotFor(int key) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /*
+     * find - private helper method that returns the slot containing the
+     * specified key, or the empty slot where it would be added if it is
+     * not in the table.
+     */
+    private int find(int key) {
+        int slot = slotFor(key);
+        while (values[slot] != null && keys[slot] != key)
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    /**
+     * get - returns the value associated with the specified key, or null
+     * if the key is not in the table
+     */
+    public Object get(int key) {
+        return values[find(key)];
+    }
+
+    /**
+     * containsKey - returns true if the specified key is in the table
+     */
+    public boolean containsKey(int key) {
+        return values[find(key)] != null;
+    }
+
+    /**
+     * put - associates the specified value with the specified key,
+     * replacing any value that was already associated with it.  Returns
+     * the previous value, or null if there was none.
+     */
+    public Object put(int key, Object value) {
+        if (value == null)
+            throw new IllegalArgumentException("null values are not allowed");
+
+        int slot = find(key);
+        Object old = values[slot];
+        keys[slot] = key;
+        values[slot] = value;
+
+        if (old == null) {
+            size++;
+            if (2 * size > keys.length)
+                grow();
+        }
+        return old;
+    }
+
+    /*
+     * grow - private helper method that doubles the size of the table
+     * and re-adds all of the entries.
+     */
+    private void grow() {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(2 * oldKeys.length);
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != null) {
+                int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+                size++;
+            }
+        }
+    }
+
+    /**
+     * remove - removes the entry for the specified key, if there is one.
+     * Returns the value that was associated with the key, or null if the
+     * key was not in the table.
+     *
+     * Rather than leaving a marker in the emptied slot, this moves later
+     * entries in the same run back into it when their probe sequences
+     * pass through it, so lookups never have to skip deleted entries.
+     */
+    public Object remove(int key) {
+        int slot = find(key);
+        Object old = values[slot];
+        if (old == null)
+            return null;
+
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (values[next] != null) {
+            int home = slotFor(keys[next]);
+            // The entry at next can move to the hole if its home slot is
+            // not in the (cyclic) range hole+1 .. next.
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        values[hole] = null;
+
+        size--;
+        return old;
+    }
+
+    /**
+     * keys - returns a new array containing the keys in the table, in no
+     * particular order
+     */
+    public int[] keys() {
+        int[] result = new int[size];
+        int k = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (values[i] != null) {
+                result[k] = keys[i];
+                k++;
+            }
+        }
+        return result;
+    }
+
+    /** size - returns the number of entries in the table */
+    public int size() {
+        return size;
+    }
+}
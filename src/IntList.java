@@ -0,0 +1,307 @@
+/*
+ * IntList.java
+ *
+ * Computer Science E-22, Harvard University
+ */
+
+import java.util.*;
+import java.util.function.IntPredicate;
+
+/**
+ * A list of int values that offers the same operations as our List
+ * interface, but stores the values directly in a growable int array.
+ * Because the values are never boxed into Integer objects, it uses far
+ * less memory than an LLList of Integers or a chain of IntNodes, and it
+ * does not allocate anything when values are added.
+ *
+ * A list can also keep its values off the heap, in fixed-size blocks
+ * that are records of an OffHeapRecords table.  Many lists can share one
+ * table, which then acts as the allocator for all of them.  The heap then
+ * holds only the list object and an array of its block numbers, one int
+ * for each block of values, so a large list takes almost no heap space.
+ * A block stays with its list once the list has used it, even if the
+ * list shrinks.
+ *
+ * Methods that take an index i throw an IndexOutOfBoundsException
+ * if i is less than 0 or greater than or equal to the length of the list.
+ */
+public class IntList {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private int[] items;       // the values; items[length..] are unused
+    private int length;        // # of values in the list
+    private int modCount;      // # of structural changes, for iterators
+
+    // If the values are stored off the heap, blocks is the table that
+    // holds them, and value i is field i % blockSize of the record
+    // blockNumbers[i / blockSize]; items is then null.
+    private OffHeapRecords blocks;
+    private int blockSize;     // # of values in a block
+    private int[] blockNumbers;
+    private int blockCount;    // # of blocks that the list has used
+
+    /**
+     * Constructs an IntList object for a list that is initially empty.
+     */
+    public IntList() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs an IntList object for a list that is initially empty
+     * and that can hold the specified number of values before it needs
+     * to grow.
+     */
+    public IntList(int initialCapacity) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("negative capacity: "
+                                               + initialCapacity);
+        items = new int[Math.max(initialCapacity, 1)];
+        length = 0;
+    }
+
+    /**
+     * Constructs an IntList object for a list that is initially empty
+     * and that stores its values off the heap, in blocks that are records
+     * of the specified table.  Each record holds one block, so the table's
+     * records must have as many fields as there are values in a block.
+     * The table is not synchronized, so if it is shared by several lists,
+     * they must all be changed while holding the same lock.
+     */
+    public IntList(OffHeapRecords blocks) {
+        this.blocks = blocks;
+        blockSize = blocks.fieldsPerRecord();
+        blockNumbers = new int[1];
+        blockCount = 0;
+        length = 0;
+    }
+
+    /*
+     * ensureCapacity - private helper method that makes sure the array
+     * can hold at least minCapacity values, doubling its size if needed.
+     */
+    private void ensureCapacity(int minCapacity) {
+        if (blocks != null) {
+            while (blockCount * blockSize < minCapacity) {
+                if (blockCount == blockNumbers.length)
+                    blockNumbers = Arrays.copyOf(blockNumbers, 2 * blockCount);
+                blockNumbers[blockCount] = blocks.addRecord();
+                blockCount++;
+            }
+            return;
+        }
+        if (minCapacity <= items.length)
+            return;
+
+        int newCapacity = items.length * 2;
+        if (newCapacity < minCapacity)
+            newCapacity = minCapacity;
+        items = Arrays.copyOf(items, newCapacity);
+    }
+
+    /*
+     * get and set - private helper methods that read and write the value
+     * at position i, wherever the values are stored.  They do not check i.
+     */
+    private int get(int i) {
+        if (blocks != null)
+            return blocks.getField(blockNumbers[i / blockSize], i % blockSize);
+        return items[i];
+    }
+
+    private void set(int i, int value) {
+        if (blocks != null)
+            blocks.setField(blockNumbers[i / blockSize], i % blockSize, value);
+        else
+            items[i] = value;
+    }
+
+    /*
+     * shift - private helper method that moves the count values starting
+     * at position from so that they start at position to instead.
+     */
+    private void shift(int from, int to, int count) {
+        if (blocks == null) {
+            System.arraycopy(items, from, items, to, count);
+        } else if (to > from) {
+            for (int k = count - 1; k >= 0; k--)
+                set(to + k, get(from + k));
+        } else {
+            for (int k = 0; k < count; k++)
+                set(to + k, get(from + k));
+        }
+    }
+
+    /** getItem - returns the value at position i in the list */
+    public int getItem(int i) {
+        if (i < 0 || i >= length)
+            throw new IndexOutOfBoundsException();
+        return get(i);
+    }
+
+    /**
+     * addItem - adds the specified value at position i in the list,
+     * shifting the values that are currently in positions i, i+1, i+2,
+     * etc. to the right by one.  Always returns true, because the array
+     * is enlarged whenever it fills up.
+     */
+    public boolean addItem(int item, int i) {
+        if (i < 0 || i > length)
+            throw new IndexOutOfBoundsException();
+
+        ensureCapacity(length + 1);
+        shift(i, i + 1, length - i);
+        set(i, item);
+
+        length++;
+        modCount++;
+        return true;
+    }
+
+    /**
+     * removeItem - removes the value at position i in the list,
+     * shifting the values that are currently in positions i+1, i+2,
+     * etc. to the left by one.  Returns the removed value.
+     */
+    public int removeItem(int i) {
+        if (i < 0 || i >= length)
+            throw new IndexOutOfBoundsException();
+
+        int removed = get(i);
+        shift(i + 1, i, length - i - 1);
+
+        length--;
+        modCount++;
+        return removed;
+    }
+
+    /**
+     * removeIf - removes every value for which the specified predicate
+     * is true, keeping the remaining values in order.  Returns true if
+     * any values were removed.
+     *
+     * This makes a single pass over the array, so it takes O(n) time no
+     * matter how many values are removed.  For example,
+     * list.removeIf(x -> x % 2 != 0) does what IntNode.removeOdds()
+     * does for a linked list of IntNodes.
+     */
+    public boolean removeIf(IntPredicate filter) {
+        int kept = 0;
+        for (int i = 0; i < length; i++) {
+            int value = get(i);
+            if (!filter.test(value)) {
+                set(kept, value);
+                kept++;
+            }
+        }
+
+        if (kept == length)
+            return false;
+        length = kept;
+        modCount++;
+        return true;
+    }
+
+    /** length - returns the number of values in the list */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * isFull - always returns false, because the array is enlarged
+     * whenever it fills up.
+     */
+    public boolean isFull() {
+        return false;
+    }
+
+    /**
+     * toArray - returns a new array containing the values in the list
+     */
+    public int[] toArray() {
+        if (blocks == null)
+            return Arrays.copyOf(items, length);
+
+        int[] values = new int[length];
+        for (int i = 0; i < length; i++)
+            values[i] = get(i);
+        return values;
+    }
+
+    /**
+     * toString - converts the list into a String of the form
+     * {item0, item1, ...}
+     */
+    public String toString() {
+        StringBuilder str = new StringBuilder("{");
+
+        for (int i = 0; i < length; i++) {
+            str.append(get(i));
+            if (i < length - 1)
+                str.append(", ");
+        }
+
+        str.append("}");
+        return str.toString();
+    }
+
+    /**
+     * iterator - returns an iterator for this list whose nextInt()
+     * method returns the values without boxing them
+     */
+    public PrimitiveIterator.OfInt iterator() {
+        return new IntListIterator();
+    }
+
+    /*
+     *** private inner class for an iterator over an IntList ***
+     */
+    private class IntListIterator implements PrimitiveIterator.OfInt {
+        private int nextIndex;          // index of the next value to visit
+        private int lastVisited;        // index of the most recently
+                                        // visited value, or -1 if none
+        private int expectedModCount;
+
+        public IntListIterator() {
+            nextIndex = 0;
+            lastVisited = -1;
+            expectedModCount = modCount;
+        }
+
+        /**
+         * hasNext - does the iterator have additional values to visit?
+         */
+        public boolean hasNext() {
+            return (nextIndex < length);
+        }
+
+        /**
+         * nextInt - returns the next value in the iteration
+         */
+        public int nextInt() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (nextIndex >= length)
+                throw new NoSuchElementException();
+
+            lastVisited = nextIndex;
+            nextIndex++;
+            return get(lastVisited);
+        }
+
+        /**
+         * remove - removes the value most recently returned by nextInt()
+         */
+        public void remove() {
+            if (lastVisited < 0)
+                throw new IllegalStateException();
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+
+            removeItem(lastVisited);
+            nextIndex = lastVisited;
+            lastVisited = -1;
+            expectedModCount = modCount;
+        }
+    }
+}
@@ -27,12 +27,91 @@ public class LLList implements List {
     private Node head;     // dummy head node
     private int length;    // # of items in the list
     
+    // The finger remembers the node most recently found by getNode(),
+    // so that a later access at or after fingerIndex can start from
+    // there instead of from the head.  It always refers to a node that
+    // is still in the list, and fingerIndex is always that node's
+    // current position (-1 for the dummy head node).
+    private Node finger;
+    private int fingerIndex;
+    
+    private int modCount;  // # of structural changes, for iterators
+    
+    // In recycling mode, removed nodes are kept on a free list (linked
+    // through their next fields) and reused by later insertions, so that
+    // a list with a steady mix of inserts and removals allocates very
+    // few new nodes.  At most maxFree nodes are kept.
+    private Node freeList;
+    private int freeCount;
+    private int maxFree;
+    
     /**
      * Constructs a LLList object for a list that is initially empty.
      */
     public LLList() {
+        this(0);
+    }
+    
+    /**
+     * Constructs a LLList object for a list that is initially empty and
+     * that keeps up to maxFree removed nodes for reuse by later
+     * insertions.  If maxFree is 0, removed nodes are never reused.
+     * LLListChurnTest compares the number of garbage collections that
+     * steady-state churn causes with and without recycling.
+     */
+    public LLList(int maxFree) {
+        if (maxFree < 0)
+            throw new IllegalArgumentException("negative free-list size: "
+                                               + maxFree);
         head = new Node(null, null);
         length = 0;
+        resetFinger();
+        freeList = null;
+        freeCount = 0;
+        this.maxFree = maxFree;
+    }
+    
+    /*
+     * newNode - private helper method that returns a node containing
+     * the specified item and next reference, reusing a node from the
+     * free list if there is one.
+     */
+    private Node newNode(Object item, Node next) {
+        if (freeList == null)
+            return new Node(item, next);
+        
+        Node n = freeList;
+        freeList = n.next;
+        freeCount--;
+        n.item = item;
+        n.next = next;
+        return n;
+    }
+    
+    /*
+     * recycle - private helper method that puts a node that has been
+     * removed from the list onto the free list, unless the free list is
+     * already full.  The node's item is cleared so that the free list
+     * does not keep removed items alive.
+     */
+    private void recycle(Node n) {
+        if (freeCount >= maxFree)
+            return;
+        
+        n.item = null;
+        n.next = freeList;
+        freeList = n;
+        freeCount++;
+    }
+    
+    /*
+     * resetFinger - private helper method that points the finger back
+     * at the dummy head node.  Used whenever a change to the list may
+     * have moved the node that the finger refers to.
+     */
+    private void resetFinger() {
+        finger = head;
+        fingerIndex = -1;
     }
     
     /* 
@@ -41,17 +120,69 @@ public class LLList implements List {
      * parameter is valid.  
      * 
      * If i == -1, it returns a reference to the dummy head node.
+     *
+     * If i is at or after the position of the finger, the traversal
+     * starts from the finger rather than from the head, and the finger
+     * is then moved to the node that was found.  As a result, loops
+     * that call getItem(0), getItem(1), ... take O(n) time overall.
      */
     private Node getNode(int i) {
         Node trav = head;
         int travIndex = -1;
+        if (i >= fingerIndex) {
+            trav = finger;
+            travIndex = fingerIndex;
+        }
+        
         while (travIndex < i) {
             travIndex++;
             trav = trav.next;
         }
+        
+        finger = trav;
+        fingerIndex = travIndex;
         return trav;
     }
     
+    /*
+     * linkAfter - private helper method that inserts a new node
+     * containing the specified item after prevNode, which must be the
+     * node at position i - 1.  The new node ends up at position i, and
+     * the finger is adjusted if it refers to a node that was shifted.
+     */
+    private void linkAfter(Node prevNode, int i, Object item) {
+        Node newNode = newNode(item, prevNode.next);
+        prevNode.next = newNode;
+        
+        if (fingerIndex >= i)
+            fingerIndex++;
+        length++;
+        modCount++;
+    }
+    
+    /*
+     * unlinkAfter - private helper method that removes the node after
+     * prevNode, which must be the node at position i - 1, and returns
+     * the removed item.  The finger is adjusted if it refers to the
+     * removed node or to a node that was shifted.
+     */
+    private Object unlinkAfter(Node prevNode, int i) {
+        Node removedNode = prevNode.next;
+        Object removed = removedNode.item;
+        prevNode.next = removedNode.next;
+        recycle(removedNode);
+        
+        if (fingerIndex == i) {
+            finger = prevNode;
+            fingerIndex = i - 1;
+        } else if (fingerIndex > i) {
+            fingerIndex--;
+        }
+        length--;
+        modCount++;
+        return removed;
+    }
+    
     /** getItem - returns the item at position i in the list */
     public Object getItem(int i) {
         if (i < 0 || i >= length)
@@ -69,17 +200,16 @@ public class LLList implements List {
      * We don't need a special case for insertion at the front of the
      * list (i == 0), because getNode(0 - 1) will return the dummy
      * head node, and the rest of insertion can proceed as usual.
+     *
+     * getNode(i - 1) leaves the finger on prevNode, whose position is
+     * not changed by the insertion, so the finger remains valid.
      */
     public boolean addItem(Object item, int i) {
         if (i < 0 || i > length)
             throw new IndexOutOfBoundsException();
         
-        Node newNode = new Node(item, null);
         Node prevNode = getNode(i - 1);           
-        newNode.next = prevNode.next;
-        prevNode.next = newNode;
-        
-        length++;
+        linkAfter(prevNode, i, item);
         return true;
     }
     
@@ -90,18 +220,97 @@ public class LLList implements List {
      * object.
      *
      * Here again, we don't need a special case for i == 0 (see the
-     * note accompanying addItem above).
+     * note accompanying addItem above).  As in addItem, the finger is
+     * left on prevNode, which is not affected by the removal.
      */
     public Object removeItem(int i) {
         if (i < 0 || i >= length)
             throw new IndexOutOfBoundsException();
         
         Node prevNode = getNode(i - 1);           
-        Object removed = prevNode.next.item;
-        prevNode.next = prevNode.next.next;
+        return unlinkAfter(prevNode, i);
+    }
+    
+    /**
+     * insertAll - adds the items in the specified array at positions
+     * at, at+1, ... in the list.  Always returns true, because the list
+     * is never full.
+     *
+     * The new nodes are linked together first and then spliced in after
+     * node at - 1, so the list is traversed only once.
+     */
+    public boolean insertAll(Object[] items, int at) {
+        if (at < 0 || at > length)
+            throw new IndexOutOfBoundsException();
+        if (items.length == 0)
+            return true;
         
-        length--;
-        return removed;
+        Node prevNode = getNode(at - 1);
+        Node trav = prevNode;
+        Node after = prevNode.next;
+        for (int k = 0; k < items.length; k++) {
+            trav.next = newNode(items[k], null);
+            trav = trav.next;
+        }
+        trav.next = after;
+        
+        length += items.length;
+        modCount++;
+        return true;
+    }
+    
+    /**
+     * addAll - adds the items in the list src, in order, at positions
+     * at, at+1, ... in this list.  Always returns true.  src is read
+     * in full before this list is changed, so it may be this list.
+     */
+    public boolean addAll(List src, int at) {
+        if (at < 0 || at > length)
+            throw new IndexOutOfBoundsException();
+        
+        // Build the chain of new nodes before touching this list.
+        Node chain = new Node(null, null);
+        Node chainTail = chain;
+        int count = src.length();
+        ListIterator iter = src.iterator();
+        for (int k = 0; k < count; k++) {
+            chainTail.next = newNode(iter.next(), null);
+            chainTail = chainTail.next;
+        }
+        if (count == 0)
+            return true;
+        
+        Node prevNode = getNode(at - 1);
+        chainTail.next = prevNode.next;
+        prevNode.next = chain.next;
+        
+        length += count;
+        modCount++;
+        return true;
+    }
+    
+    /**
+     * removeRange - removes the items in positions from, from+1, ...,
+     * to-1 in the list.  It finds node from - 1 and unlinks the whole
+     * run of nodes after it at once.
+     */
+    public void removeRange(int from, int to) {
+        if (from < 0 || to > length || from > to)
+            throw new IndexOutOfBoundsException();
+        if (from == to)
+            return;
+        
+        Node prevNode = getNode(from - 1);
+        Node trav = prevNode.next;
+        for (int k = from; k < to; k++) {
+            Node removedNode = trav;
+            trav = trav.next;
+            recycle(removedNode);
+        }
+        prevNode.next = trav;
+        
+        length -= (to - from);
+        modCount++;
     }
     
     /** length - returns the number of items in the list */
@@ -117,6 +326,15 @@ public class LLList implements List {
         return false;
     }
     
+    /*
+     * freeCount - returns the number of removed nodes that are on the free
+     * list, waiting to be reused.  It is not public, because it is only
+     * meant for tests of recycling mode.
+     */
+    int freeCount() {
+        return freeCount;
+    }
+    
     /**
      * toString - converts the list into a String of the form 
      * {item0, item1, ...}
@@ -139,83 +357,182 @@ public class LLList implements List {
     /**
      * iterator - returns an iterator for this list
      */
-    public ListIterator iterator() {
+    public ListIterator<Object> iterator() {
         return new LLListIterator();
     }
     
     /*
      *** private inner class for an iterator over an LLList ***
+     *
+     * The iterator keeps a reference to the node before the cursor, so
+     * that next(), add(), remove() and set() all take constant time.
+     * Because the list is singly linked, previous() needs the nodes in
+     * front of that one as well.  The first call to previous() records
+     * them in a trail, which takes one pass from the head; from then on,
+     * the iterator keeps the trail up to date as it moves, so each later
+     * step in either direction takes constant (amortized) time.  An
+     * iteration that only moves forward never builds the trail.
      */
-    private class LLListIterator implements ListIterator {
-        private Node nextNode;          // the next node to visit    
+    private class LLListIterator implements ListIterator<Object> {
+        private Node prevNode;          // the node before the cursor
+        private int nextIndex;          // index of the node after it
         private Node lastVisitedNode;   // the most recently visited node
+        private Node lastVisitedPrev;   // the node before lastVisitedNode
+        private Node[] trail;           // trail[k] is the node at position
+                                        // k - 1, for k <= nextIndex, or
+                                        // null if previous() isn't used
+        private int expectedModCount;
         
         public LLListIterator() {
-            nextNode = head.next;
+            prevNode = head;
+            nextIndex = 0;
             lastVisitedNode = null;
+            lastVisitedPrev = null;
+            trail = null;
+            expectedModCount = modCount;
+        }
+        
+        /*
+         * buildTrail - records the nodes from the dummy head node up to
+         * prevNode in the trail.
+         */
+        private void buildTrail() {
+            trail = new Node[Math.max(16, 2 * (nextIndex + 1))];
+            Node trav = head;
+            for (int k = 0; k <= nextIndex; k++) {
+                trail[k] = trav;
+                trav = trav.next;
+            }
+        }
+        
+        /*
+         * extendTrail - if the trail is in use, records prevNode as the
+         * node at position nextIndex - 1.
+         */
+        private void extendTrail() {
+            if (trail == null)
+                return;
+            if (nextIndex == trail.length)
+                trail = Arrays.copyOf(trail, 2 * trail.length);
+            trail[nextIndex] = prevNode;
+        }
+        
+        /*
+         * checkForComodification - throws an exception if the list was
+         * structurally modified other than through this iterator.
+         */
+        private void checkForComodification() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
         }
         
         /**
          * hasNext - does the iterator have additional items to visit?
          */
         public boolean hasNext() {
-            return (nextNode != null);
+            return (prevNode.next != null);
         }
         
         /**
          * next - returns a reference to the next Object in the iteration
          */
         public Object next() {
-            if (nextNode == null)
+            checkForComodification();
+            if (prevNode.next == null)
                 throw new NoSuchElementException();
             
-            Object item = nextNode.item;
-            lastVisitedNode = nextNode;
-            nextNode = nextNode.next;
+            lastVisitedPrev = prevNode;
+            prevNode = prevNode.next;
+            nextIndex++;
+            lastVisitedNode = prevNode;
+            extendTrail();
             
-            return item;
+            return lastVisitedNode.item;
+        }
+        
+        /**
+         * hasPrevious - does the iterator have items before the cursor?
+         */
+        public boolean hasPrevious() {
+            return (nextIndex > 0);
+        }
+        
+        /**
+         * previous - returns a reference to the previous Object in the
+         * iteration and moves the cursor back by one
+         */
+        public Object previous() {
+            checkForComodification();
+            if (nextIndex == 0)
+                throw new NoSuchElementException();
+            
+            if (trail == null)
+                buildTrail();
+            
+            lastVisitedNode = prevNode;
+            trail[nextIndex] = null;
+            nextIndex--;
+            prevNode = trail[nextIndex];
+            lastVisitedPrev = prevNode;
+            
+            return lastVisitedNode.item;
+        }
+        
+        public int nextIndex() {
+            return nextIndex;
+        }
+        
+        public int previousIndex() {
+            return nextIndex - 1;
+        }
+        
+        /**
+         * remove - removes the item most recently returned by next()
+         * or previous()
+         */
+        public void remove() {
+            if (lastVisitedNode == null)
+                throw new IllegalStateException();
+            checkForComodification();
+            
+            if (lastVisitedNode == prevNode) {    // last call was next()
+                if (trail != null)
+                    trail[nextIndex] = null;
+                prevNode = lastVisitedPrev;
+                nextIndex--;
+            }
+            unlinkAfter(lastVisitedPrev, nextIndex);
+            lastVisitedNode = null;
+            lastVisitedPrev = null;
+            expectedModCount = modCount;
+        }
+        
+        /**
+         * set - replaces the item most recently returned by next()
+         * or previous()
+         */
+        public void set(Object item) {
+            if (lastVisitedNode == null)
+                throw new IllegalStateException();
+            checkForComodification();
+            
+            lastVisitedNode.item = item;
+        }
+        
+        /**
+         * add - inserts the specified item immediately before the
+         * cursor
+         */
+        public void add(Object item) {
+            checkForComodification();
+            
+            linkAfter(prevNode, nextIndex, item);
+            prevNode = prevNode.next;
+            nextIndex++;
+            extendTrail();
+            lastVisitedNode = null;
+            lastVisitedPrev = null;
+            expectedModCount = modCount;
         }
-
-		@Override
-		public void add(Object arg0) {
-			// TODO Auto-generated method stub
-			
-		}
-
-		@Override
-		public boolean hasPrevious() {
-			// TODO Auto-generated method stub
-			return false;
-		}
-
-		@Override
-		public int nextIndex() {
-			// TODO Auto-generated method stub
-			return 0;
-		}
-
-		@Override
-		public Object previous() {
-			// TODO Auto-generated method stub
-			return null;
-		}
-
-		@Override
-		public int previousIndex() {
-			// TODO Auto-generated method stub
-			return 0;
-		}
-
-		@Override
-		public void remove() {
-			// TODO Auto-generated method stub
-			
-		}
-
-		@Override
-		public void set(Object arg0) {
-			// TODO Auto-generated method stub
-			
-		}
     }
-}
\ No newline at end of file
+}
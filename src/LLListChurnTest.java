@@ -0,0 +1,121 @@
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+
+/*
+ * LLListChurnTest - checks that an LLList in recycling mode reuses the
+ * nodes it removes and does not keep their items alive, and then runs
+ * steady-state churn (a removal and an insertion at a time) over a
+ * fixed-size list with and without recycling, printing the number of
+ * garbage collections and the time that each one takes.
+ *
+ * The number of operations can be given as an argument.
+ */
+public class LLListChurnTest {
+	static final int LIST_SIZE = 1000;
+	static final int WINDOW = 16;      // changes are made near the front
+
+	public static void main(String[] args) {
+		testReuse();
+		testItemsCleared();
+
+		int ops = (args.length > 0) ? Integer.parseInt(args[0]) : 50000000;
+		Object[] items = new Object[LIST_SIZE];
+		for (int i = 0; i < items.length; i++)
+			items[i] = "item " + i;
+		churn("new nodes", new LLList(), items, ops);
+		churn("recycled nodes", new LLList(LIST_SIZE), items, ops);
+	}
+
+	/*
+	 * testReuse - removed nodes go on the free list, up to its limit,
+	 * and insertions take them back off it before allocating new ones.
+	 */
+	static void testReuse() {
+		LLList list = new LLList(2);
+		for (int i = 0; i < 5; i++)
+			list.addItem(i, i);
+		list.removeItem(0);
+		list.removeItem(0);
+		list.removeItem(0);
+		expect(list.freeCount() == 2, "free list holds " + list.freeCount());
+
+		list.addItem("a", 0);
+		expect(list.freeCount() == 1, "a free node was not reused");
+		list.addItem("b", 2);
+		list.addItem("c", 1);
+		expect(list.freeCount() == 0, "free list holds " + list.freeCount());
+		expect(list.toString().equals("{a, c, 3, b, 4}"), "list is " + list);
+
+		list.removeRange(1, 4);
+		expect(list.freeCount() == 2, "removeRange() did not recycle");
+		expect(list.toString().equals("{a, 4}"), "list is " + list);
+
+		LLList plain = new LLList();
+		plain.addItem("x", 0);
+		plain.removeItem(0);
+		expect(plain.freeCount() == 0, "LLList() kept a removed node");
+		System.out.println("reuse ok");
+	}
+
+	/*
+	 * testItemsCleared - a node on the free list does not refer to the
+	 * item that was removed from it, so the item can be collected.
+	 */
+	static void testItemsCleared() {
+		LLList list = new LLList(10);
+		Object item = new Object();
+		WeakReference<Object> removed = new WeakReference<Object>(item);
+		list.addItem(item, 0);
+		list.removeItem(0);
+		item = null;
+
+		for (int i = 0; i < 10 && removed.get() != null; i++)
+			System.gc();
+		expect(list.freeCount() == 1, "the node was not recycled");
+		expect(removed.get() == null, "the free list kept a removed item");
+		System.out.println("items cleared ok");
+	}
+
+	/*
+	 * churn - fills the list, then makes ops changes that each remove an
+	 * item from near the front and insert one in its place, so the list
+	 * stays the same size, and prints the number of collections.
+	 */
+	static void churn(String mode, LLList list, Object[] items, int ops) {
+		for (int i = 0; i < items.length; i++)
+			list.addItem(items[i], i);
+
+		System.gc();
+		long collections = collectionCount();
+		long start = System.nanoTime();
+		int seed = 1;
+		for (int k = 0; k < ops; k++) {
+			seed = seed * 1103515245 + 12345;
+			int i = (seed >>> 16) % WINDOW;
+			list.addItem(list.removeItem(i), (i * 7) % WINDOW);
+		}
+		long millis = (System.nanoTime() - start) / 1000000;
+		collections = collectionCount() - collections;
+
+		expect(list.length() == items.length, "the list changed size");
+		System.out.println(mode + ": " + ops + " changes, " + collections
+		                   + " collections, " + millis + " ms");
+	}
+
+	/*
+	 * collectionCount - returns the total number of collections that the
+	 * JVM's garbage collectors have made so far.
+	 */
+	static long collectionCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+			count += Math.max(gc.getCollectionCount(), 0);
+		return count;
+	}
+
+	static void expect(boolean condition, String message) {
+		if (!condition)
+			throw new RuntimeException(message);
+	}
+}
@@ -39,5 +39,75 @@ public interface List {
     boolean isFull();
 
     /** returns an iterator object for this list. */
-    ListIterator iterator();
+    ListIterator<Object> iterator();
+
+    /**
+     * adds the items in the specified array at positions at, at+1, ...
+     * in the list, shifting the items that are currently in positions
+     * at, at+1, etc. to the right by items.length.  Returns false if the
+     * list became full before all of the items were added, and true
+     * otherwise.  Throws an IndexOutOfBoundsException if at is less
+     * than 0 or greater than the length of the list.
+     *
+     * This default version calls addItem once per item; implementations
+     * should override it to make a single pass over the list.
+     */
+    default boolean insertAll(Object[] items, int at) {
+        if (at < 0 || at > length())
+            throw new IndexOutOfBoundsException();
+        for (int k = 0; k < items.length; k++) {
+            if (isFull())
+                return false;
+            addItem(items[k], at + k);
+        }
+        return true;
+    }
+
+    /**
+     * adds the items in the list src, in order, at positions at, at+1,
+     * ... in this list.  src may be this list itself.  Returns false if
+     * the list became full before all of the items were added, and true
+     * otherwise.
+     */
+    default boolean addAll(List src, int at) {
+        if (at < 0 || at > length())
+            throw new IndexOutOfBoundsException();
+
+        Object[] items = new Object[src.length()];
+        ListIterator iter = src.iterator();
+        for (int k = 0; k < items.length; k++)
+            items[k] = iter.next();
+        return insertAll(items, at);
+    }
+
+    /**
+     * removes the items in positions from, from+1, ..., to-1 in the
+     * list, shifting the items that follow them to the left.  Throws an
+     * IndexOutOfBoundsException if from is less than 0, to is greater
+     * than the length of the list, or from is greater than to.
+     *
+     * This default version calls removeItem once per item;
+     * implementations should override it to make a single pass.
+     */
+    default void removeRange(int from, int to) {
+        if (from < 0 || to > length() || from > to)
+            throw new IndexOutOfBoundsException();
+        for (int k = from; k < to; k++)
+            removeItem(from);
+    }
+
+    /**
+     * returns a list containing the items that are currently in this
+     * list, in the same order, that is not affected by later changes to
+     * this list (and vice versa).
+     *
+     * This default version copies the items into an ArrayList, which
+     * takes O(n) time; implementations that can share their structure
+     * with the snapshot should override it.
+     */
+    default List snapshot() {
+        ArrayList copy = new ArrayList(length());
+        copy.addAll(this, 0);
+        return copy;
+    }
 }
\ No newline at end of file
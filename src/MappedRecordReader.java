@@ -0,0 +1,299 @@
+/*
+ * MappedRecordReader.java
+ *
+ * Computer Science E-22, Harvard University
+ */
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+
+/**
+ * A class for reading a file of records with one record per line and
+ * the fields separated by tabs or commas (a TSV or CSV file without
+ * quoting).  The separator is whichever of the two appears first in the
+ * first line of the file.
+ *
+ * The file is memory-mapped, one large region at a time, and the fields
+ * are parsed directly from the mapped bytes: readInt() converts digits
+ * without creating a String, and readCachedString() only creates a
+ * String the first time it sees a particular value.  Lines may end in
+ * "\n" or "\r\n", and blank lines are skipped.  Text is decoded as UTF-8.
+ *
+ * Typical use:
+ *
+ *     while (reader.nextRecord()) {
+ *         int id = reader.readInt();
+ *         String name = reader.readString();
+ *         ...
+ *     }
+ */
+public class MappedRecordReader implements Closeable {
+    private static final int REGION_SIZE = 1 << 28;     // 256 MB
+    private static final int CACHE_CAPACITY = 256;
+
+    private FileChannel channel;
+    private long fileSize;
+    private String fileName;
+
+    private MappedByteBuffer region;    // the currently mapped region
+    private long regionStart;           // its offset in the file
+    private int pos;                    // next byte to read in region
+    private int lineEnd;                // end of the current line's text
+    private int nextLine;               // where the next line starts
+    private int lineNumber;             // 1-based, of the current line
+    private byte separator;
+
+    private byte[] scratch;             // for decoding strings
+
+    // cache for readCachedString(): an open-addressing hash table of the
+    // byte sequences seen so far and the Strings made from them
+    private byte[][] cacheKeys;
+    private String[] cacheValues;
+    private int cacheSize;
+
+    /**
+     * Constructs a MappedRecordReader for the specified file.
+     */
+    public MappedRecordReader(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        fileSize = channel.size();
+        fileName = file.toString();
+
+        regionStart = 0;
+        pos = 0;
+        nextLine = 0;
+        lineEnd = 0;
+        lineNumber = 0;
+        scratch = new byte[256];
+        cacheKeys = new byte[CACHE_CAPACITY][];
+        cacheValues = new String[CACHE_CAPACITY];
+        cacheSize = 0;
+
+        map(0);
+        separator = '\t';
+        for (int i = 0; i < region.limit(); i++) {
+            byte b = region.get(i);
+            if (b == '\t' || b == ',') {
+                separator = b;
+                break;
+            }
+            if (b == '\n')
+                break;
+        }
+    }
+
+    /*
+     * map - private helper method that maps the region of the file that
+     * starts at the specified offset.
+     */
+    private void map(long start) throws IOException {
+        long size = Math.min(REGION_SIZE, fileSize - start);
+        region = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+        regionStart = start;
+    }
+
+    /*
+     * error - private helper method that returns an IOException whose
+     * message identifies the file and the current line.
+     */
+    private IOException error(String message) {
+        return new IOException(fileName + ":" + lineNumber + ": " + message);
+    }
+
+    /*
+     * findNewline - private helper method that returns the index of the
+     * first '\n' at or after from in the current region, or -1.
+     */
+    private int findNewline(int from) {
+        int limit = region.limit();
+        for (int i = from; i < limit; i++) {
+            if (region.get(i) == '\n')
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * nextRecord - moves to the next non-blank line of the file, skipping
+     * any fields of the current line that were not read.  Returns false
+     * if there are no more lines.
+     */
+    public boolean nextRecord() throws IOException {
+        while (true) {
+            pos = nextLine;
+            if (regionStart + pos >= fileSize)
+                return false;
+
+            int newline = findNewline(pos);
+            if (newline < 0 && regionStart + region.limit() < fileSize) {
+                // The line continues past the end of this region, so map
+                // a new region that starts with it.
+                map(regionStart + pos);
+                pos = 0;
+                newline = findNewline(0);
+                if (newline < 0 && region.limit() == REGION_SIZE)
+                    throw error("line too long");
+            }
+
+            if (newline < 0) {
+                lineEnd = region.limit();
+                nextLine = lineEnd;
+            } else {
+                lineEnd = newline;
+                nextLine = newline + 1;
+            }
+            if (lineEnd > pos && region.get(lineEnd - 1) == '\r')
+                lineEnd--;
+
+            lineNumber++;
+            if (lineEnd > pos)
+                return true;
+        }
+    }
+
+    /** lineNumber - returns the line number of the current record */
+    public int lineNumber() {
+        return lineNumber;
+    }
+
+    /*
+     * fieldEnd - private helper method that returns the end of the field
+     * that starts at pos.  Throws an exception if there is no such field.
+     */
+    private int fieldEnd() throws IOException {
+        if (pos > lineEnd)
+            throw error("missing field");
+
+        int end = pos;
+        while (end < lineEnd && region.get(end) != separator)
+            end++;
+        return end;
+    }
+
+    /**
+     * nextFieldIsInt - returns true if the next field of the current
+     * record starts like an int (a digit, or a '-' followed by a digit).
+     * The field is not consumed.
+     */
+    public boolean nextFieldIsInt() {
+        int i = pos;
+        if (i < lineEnd && region.get(i) == '-')
+            i++;
+        return (i < lineEnd && region.get(i) >= '0' && region.get(i) <= '9');
+    }
+
+    /**
+     * readInt - reads the next field of the current record as a decimal
+     * int
+     */
+    public int readInt() throws IOException {
+        int end = fieldEnd();
+        int i = pos;
+        boolean negative = false;
+        if (i < end && region.get(i) == '-') {
+            negative = true;
+            i++;
+        }
+        if (i == end)
+            throw error("expected an integer");
+
+        // Accumulate as a negative number, so that MIN_VALUE fits.
+        int value = 0;
+        for (; i < end; i++) {
+            int digit = region.get(i) - '0';
+            if (digit < 0 || digit > 9)
+                throw error("expected an integer");
+            if (value < (Integer.MIN_VALUE + digit) / 10)
+                throw error("integer out of range");
+            value = value * 10 - digit;
+        }
+        if (!negative) {
+            if (value == Integer.MIN_VALUE)
+                throw error("integer out of range");
+            value = -value;
+        }
+
+        pos = end + 1;
+        return value;
+    }
+
+    /**
+     * readString - reads the next field of the current record as a new
+     * String
+     */
+    public String readString() throws IOException {
+        int end = fieldEnd();
+        int len = end - pos;
+        if (scratch.length < len)
+            scratch = new byte[Math.max(len, 2 * scratch.length)];
+        for (int i = 0; i < len; i++)
+            scratch[i] = region.get(pos + i);
+
+        pos = end + 1;
+        return new String(scratch, 0, len, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * readCachedString - reads the next field of the current record as a
+     * String, returning the same String object each time the same value
+     * appears.  This is meant for fields with few distinct values, such as
+     * assignment names.
+     */
+    public String readCachedString() throws IOException {
+        int end = fieldEnd();
+        int len = end - pos;
+
+        int hash = 0x811C9DC5;
+        for (int i = pos; i < end; i++)
+            hash = (hash ^ region.get(i)) * 0x01000193;
+
+        int mask = cacheKeys.length - 1;
+        int slot = hash & mask;
+        while (cacheKeys[slot] != null) {
+            if (matches(cacheKeys[slot], pos, len)) {
+                pos = end + 1;
+                return cacheValues[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        // A value we haven't seen before.
+        byte[] key = new byte[len];
+        for (int i = 0; i < len; i++)
+            key[i] = region.get(pos + i);
+        String value = new String(key, StandardCharsets.UTF_8);
+        pos = end + 1;
+
+        if (2 * (cacheSize + 1) <= cacheKeys.length) {
+            cacheKeys[slot] = key;
+            cacheValues[slot] = value;
+            cacheSize++;
+        }
+        return value;
+    }
+
+    /*
+     * matches - private helper method that returns true if the len bytes
+     * of the region starting at start are the same as the bytes in key.
+     */
+    private boolean matches(byte[] key, int start, int len) {
+        if (key.length != len)
+            return false;
+        for (int i = 0; i < len; i++) {
+            if (key[i] != region.get(start + i))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * close - closes the file
+     */
+    public void close() throws IOException {
+        region = null;
+        channel.close();
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * OffHeapIntMap.java
+ *
+ * Computer Science E-22, Harvard University
+ */
+
+/**
+ * A hash table that maps int keys to non-negative int values, and that
+ * is stored outside the Java heap.  It works like IntHashMap, using open
+ * addressing with linear probing, but each slot is a two-field record of
+ * an OffHeapRecords table, so the heap holds only the table's chunk
+ * objects, however many entries there are.
+ *
+ * A slot's value field holds the value plus 1, so that a slot whose
+ * fields are still 0 is empty; this is why values must not be negative.
+ * The table doubles in size when it becomes half full, by copying the
+ * entries into a new table; the memory for the old one is released when
+ * its chunks are collected.
+ *
+ * Like IntHashMap, the table is not synchronized.
+ */
+public class OffHeapIntMap {
+    // A table has at least as many slots as a chunk of records holds,
+    // since a chunk is allocated in full however many of its records
+    // are used.
+    private static final int MIN_CAPACITY = 1 << 16;
+
+    // the fields of a slot
+    private static final int KEY = 0;
+    private static final int VALUE = 1;     // value + 1, or 0 if empty
+
+    private OffHeapRecords slots;
+    private int size;           // # of entries in the table
+    private int mask;           // # of slots - 1; the # is a power of 2
+
+    /**
+     * Constructs an OffHeapIntMap object for a table that is initially
+     * empty.
+     */
+    public OffHeapIntMap() {
+        allocate(MIN_CAPACITY);
+    }
+
+    /*
+     * allocate - private helper method that replaces the table with an
+     * empty table of the specified capacity, which must be a power of 2.
+     */
+    private void allocate(int capacity) {
+        slots = new OffHeapRecords(2);
+        for (int i = 0; i < capacity; i++)
+            slots.addRecord();
+        mask = capacity - 1;
+        size = 0;
+    }
+
+    /*
+     * slotFor - private helper method that returns the slot that the
+     * specified key hashes to, spreading keys as IntHashMap does.
+     */
+    private int slotFor(int key) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /*
+     * find - private helper method that returns the slot containing the
+     * specified key, or the empty slot where it would be added if it is
+     * not in the table.
+     */
+    private int find(int key) {
+        int slot = slotFor(key);
+        while (slots.getField(slot, VALUE) != 0
+                && slots.getField(slot, KEY) != key)
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    /**
+     * get - returns the value associated with the specified key, or -1
+     * if the key is not in the table
+     */
+    public int get(int key) {
+        return slots.getField(find(key), VALUE) - 1;
+    }
+
+    /**
+     * containsKey - returns true if the specified key is in the table
+     */
+    public boolean containsKey(int key) {
+        return get(key) >= 0;
+    }
+
+    /**
+     * put - associates the specified value, which must not be negative,
+     * with the specified key, replacing any value that was already
+     * associated with it.  Returns the previous value, or -1 if there was
+     * none.
+     */
+    public int put(int key, int value) {
+        if (value < 0)
+            throw new IllegalArgumentException("negative values are not allowed");
+
+        int slot = find(key);
+        int old = slots.getField(slot, VALUE) - 1;
+        slots.setField(slot, KEY, key);
+        slots.setField(slot, VALUE, value + 1);
+
+        if (old < 0) {
+            size++;
+            if (2 * size > mask + 1)
+                grow();
+        }
+        return old;
+    }
+
+    /*
+     * grow - private helper method that doubles the size of the table
+     * and re-adds all of the entries.
+     */
+    private void grow() {
+        OffHeapRecords oldSlots = slots;
+        int oldCapacity = mask + 1;
+        allocate(2 * oldCapacity);
+
+        for (int i = 0; i < oldCapacity; i++) {
+            int stored = oldSlots.getField(i, VALUE);
+            if (stored != 0) {
+                int slot = find(oldSlots.getField(i, KEY));
+                slots.setField(slot, KEY, oldSlots.getField(i, KEY));
+                slots.setField(slot, VALUE, stored);
+                size++;
+            }
+        }
+    }
+
+    /**
+     * remove - removes the entry for the specified key, if there is one.
+     * Returns the value that was associated with the key, or -1 if the
+     * key was not in the table.  As in IntHashMap, later entries in the
+     * same run are moved back into the emptied slot.
+     */
+    public int remove(int key) {
+        int slot = find(key);
+        int old = slots.getField(slot, VALUE) - 1;
+        if (old < 0)
+            return -1;
+
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (slots.getField(next, VALUE) != 0) {
+            int home = slotFor(slots.getField(next, KEY));
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                slots.setField(hole, KEY, slots.getField(next, KEY));
+                slots.setField(hole, VALUE, slots.getField(next, VALUE));
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        slots.setField(hole, KEY, 0);
+        slots.setField(hole, VALUE, 0);
+
+        size--;
+        return old;
+    }
+
+    /** size - returns the number of entries in the table */
+    public int size() {
+        return size;
+    }
+}
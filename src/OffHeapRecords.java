@@ -0,0 +1,164 @@
+/*
+ * OffHeapRecords.java
+ *
+ * Computer Science E-22, Harvard University
+ */
+
+import java.nio.*;
+import java.util.*;
+
+/**
+ * A table of fixed-width records, each consisting of a fixed number of
+ * int fields, that is stored outside the Java heap.  The records are
+ * kept in direct ByteBuffers ("chunks") of RECORDS_PER_CHUNK records
+ * each, so the heap holds only the buffer objects and the array that
+ * refers to them, however many records there are.  This keeps large
+ * tables from lengthening garbage-collection pauses; the memory for a
+ * chunk is released when its buffer is collected.  The total size is
+ * limited by the JVM's -XX:MaxDirectMemorySize setting.
+ *
+ * Records are numbered in the order in which they were added, starting
+ * from 0, and are never moved or removed.  Adding a record fills the
+ * last chunk or allocates a new one, so unlike an array that doubles
+ * in size, the existing records are never copied.
+ *
+ * Fields are read and written with absolute get and put operations, so
+ * several threads can read the same chunk at once.
+ */
+public class OffHeapRecords {
+    private static final int RECORDS_PER_CHUNK = 1 << 16;
+
+    private ByteBuffer[] chunks;
+    private int chunkCount;         // # of chunks allocated
+    private int length;             // # of records in the table
+    private int fieldsPerRecord;
+    private int recordSize;         // in bytes
+    private boolean sharedChunks;   // true if the last chunk may be
+                                    // shared with a table that has more
+                                    // records
+
+    /**
+     * Constructs an OffHeapRecords object for a table that is initially
+     * empty and whose records have the specified number of int fields.
+     */
+    public OffHeapRecords(int fieldsPerRecord) {
+        if (fieldsPerRecord <= 0)
+            throw new IllegalArgumentException("fields per record must be positive");
+        this.fieldsPerRecord = fieldsPerRecord;
+        recordSize = 4 * fieldsPerRecord;
+        chunks = new ByteBuffer[4];
+        chunkCount = 0;
+        length = 0;
+        sharedChunks = false;
+    }
+
+    /*
+     * newChunk - private helper method that allocates an empty chunk.
+     */
+    private ByteBuffer newChunk() {
+        ByteBuffer chunk = ByteBuffer.allocateDirect(RECORDS_PER_CHUNK * recordSize);
+        chunk.order(ByteOrder.nativeOrder());
+        return chunk;
+    }
+
+    /*
+     * unshare - private helper method that gives this table a last chunk
+     * of its own to add records to.  The other chunks are full, so their
+     * records are never changed, and they can stay shared.
+     */
+    private void unshare() {
+        int used = length % RECORDS_PER_CHUNK;
+        if (used != 0) {
+            ByteBuffer last = chunks[chunkCount - 1];
+            ByteBuffer copy = newChunk();
+            for (int i = 0; i < used * recordSize; i += 4)
+                copy.putInt(i, last.getInt(i));
+            chunks[chunkCount - 1] = copy;
+        }
+        sharedChunks = false;
+    }
+
+    /**
+     * addRecord - adds a record whose fields are all 0 to the end of the
+     * table and returns its number.  Its fields can then be set with
+     * setField().
+     */
+    public int addRecord() {
+        if (sharedChunks)
+            unshare();
+
+        if (length == chunkCount * RECORDS_PER_CHUNK) {
+            if (chunkCount == chunks.length)
+                chunks = Arrays.copyOf(chunks, Math.max(4, 2 * chunkCount));
+            chunks[chunkCount] = newChunk();
+            chunkCount++;
+        }
+        return length++;
+    }
+
+    /**
+     * setField - sets the specified field of the specified record, which
+     * must have been added to this table, to the specified value
+     */
+    public void setField(int record, int field, int value) {
+        checkField(record, field);
+        chunks[record / RECORDS_PER_CHUNK].putInt(offset(record, field), value);
+    }
+
+    /**
+     * getField - returns the value of the specified field of the specified
+     * record
+     */
+    public int getField(int record, int field) {
+        checkField(record, field);
+        return chunks[record / RECORDS_PER_CHUNK].getInt(offset(record, field));
+    }
+
+    /** fieldsPerRecord - returns the number of int fields in a record */
+    public int fieldsPerRecord() {
+        return fieldsPerRecord;
+    }
+
+    /** length - returns the number of records in the table */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * snapshot - returns an OffHeapRecords object containing the records
+     * that are currently in this table.  Later records added to either
+     * table are not seen by the other.
+     *
+     * As in GradeColumns.snapshot(), the snapshot shares this table's
+     * chunks, and copies the last one before it adds a record of its own,
+     * so this takes time proportional to the number of chunks rather than
+     * the number of records, and no off-heap memory is allocated.
+     */
+    public OffHeapRecords snapshot() {
+        OffHeapRecords copy = new OffHeapRecords(fieldsPerRecord);
+        copy.chunks = Arrays.copyOf(chunks, chunkCount);
+        copy.chunkCount = chunkCount;
+        copy.length = length;
+        copy.sharedChunks = true;
+        return copy;
+    }
+
+    /*
+     * offset - private helper method that returns the position of the
+     * specified field of the specified record within its chunk.
+     */
+    private int offset(int record, int field) {
+        return (record % RECORDS_PER_CHUNK) * recordSize + 4 * field;
+    }
+
+    /*
+     * checkField - private helper method that throws an
+     * IndexOutOfBoundsException if record is not a valid record number or
+     * field is not a valid field number.
+     */
+    private void checkField(int record, int field) {
+        if (record < 0 || record >= length || field < 0
+                || field >= fieldsPerRecord)
+            throw new IndexOutOfBoundsException();
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * OffHeapStrings.java
+ *
+ * Computer Science E-22, Harvard University
+ */
+
+import java.nio.*;
+import java.util.*;
+
+/**
+ * An area of memory outside the Java heap that holds Strings.  add()
+ * copies a String's characters into the area and returns an int
+ * reference to them, which can be stored in an off-heap record, and
+ * get() creates a String from a reference.  The heap holds only the
+ * chunk objects, however many Strings are stored.
+ *
+ * Each String is stored as its length followed by its chars, starting
+ * on a 4-byte boundary, in direct ByteBuffers of CHUNK_BYTES bytes each.
+ * A String that does not fit in the rest of the current chunk starts a
+ * new one.  Strings are never removed, so the space that a String takes
+ * is not reused even once nothing refers to it any more.
+ *
+ * The area is not synchronized.
+ */
+public class OffHeapStrings {
+    private static final int CHUNK_SHIFT = 20;
+    private static final int CHUNK_BYTES = 1 << CHUNK_SHIFT;
+
+    // A reference is a chunk number followed by OFFSET_BITS bits that
+    // give the String's offset in the chunk in units of 4 bytes, so it
+    // is a non-negative int as long as there are at most MAX_CHUNKS.
+    private static final int OFFSET_BITS = CHUNK_SHIFT - 2;
+    private static final int MAX_CHUNKS = 1 << (31 - OFFSET_BITS);
+
+    // the longest String that fits in a chunk, after its length
+    private static final int MAX_LENGTH = (CHUNK_BYTES - 4) / 2;
+
+    private ByteBuffer[] chunks;
+    private int chunkCount;     // # of chunks allocated
+    private int used;           // # of bytes used in the last chunk
+
+    /**
+     * Constructs an OffHeapStrings object for an area that is initially
+     * empty.
+     */
+    public OffHeapStrings() {
+        chunks = new ByteBuffer[4];
+        chunkCount = 0;
+        used = CHUNK_BYTES;
+    }
+
+    /**
+     * add - copies the specified String into the area and returns a
+     * reference to it.  The reference to null is -1.  Throws an
+     * IllegalArgumentException if the String is too long to fit in a
+     * chunk, or if the area is full.
+     */
+    public int add(String s) {
+        if (s == null)
+            return -1;
+        if (s.length() > MAX_LENGTH)
+            throw new IllegalArgumentException("string is too long: "
+                                               + s.length() + " chars");
+
+        int size = (4 + 2 * s.length() + 3) & ~3;
+        if (used + size > CHUNK_BYTES) {
+            if (chunkCount == MAX_CHUNKS)
+                throw new IllegalArgumentException("the string area is full");
+            if (chunkCount == chunks.length)
+                chunks = Arrays.copyOf(chunks, 2 * chunkCount);
+            chunks[chunkCount] = ByteBuffer.allocateDirect(CHUNK_BYTES)
+                                           .order(ByteOrder.nativeOrder());
+            chunkCount++;
+            used = 0;
+        }
+
+        ByteBuffer chunk = chunks[chunkCount - 1];
+        int start = used;
+        chunk.putInt(start, s.length());
+        for (int i = 0; i < s.length(); i++)
+            chunk.putChar(start + 4 + 2 * i, s.charAt(i));
+        used += size;
+        return ((chunkCount - 1) << OFFSET_BITS) | (start >>> 2);
+    }
+
+    /**
+     * get - returns a String equal to the one that add() returned the
+     * specified reference for
+     */
+    public String get(int ref) {
+        if (ref == -1)
+            return null;
+
+        int chunk = ref >>> OFFSET_BITS;
+        int start = (ref & ((1 << OFFSET_BITS) - 1)) << 2;
+        if (ref < 0 || chunk >= chunkCount)
+            throw new IllegalArgumentException("invalid reference: " + ref);
+
+        ByteBuffer bytes = chunks[chunk];
+        char[] chars = new char[bytes.getInt(start)];
+        for (int i = 0; i < chars.length; i++)
+            chars[i] = bytes.getChar(start + 4 + 2 * i);
+        return new String(chars);
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * OffHeapStudents.java
+ *
+ * Computer Science E-22, Harvard University
+ */
+
+/**
+ * A table of students, each with an id, a last name and a first name,
+ * that is stored outside the Java heap, along with an index on the id.
+ * The students are fixed-width records in an OffHeapRecords table, their
+ * names are in an OffHeapStrings area, and the index is an OffHeapIntMap
+ * from each id to its record, so the heap holds none of them.
+ *
+ * Records are numbered in the order in which they were added, starting
+ * from 0, and are never moved.  A removed student's record stays in the
+ * table, marked as removed, so the space for removed students and for
+ * replaced names is not reused.
+ *
+ * So that a reader can see the table as it was at an earlier point in
+ * time, without copying it, every rename or removal gets the next version
+ * number.  A removed record holds the version in which it was removed,
+ * and a rename adds a new name record that holds its version and refers
+ * to the one it replaces.  The table as of version v consists of the
+ * records that had been added by then and not removed in any version up
+ * to v, each with its newest names from a version up to v.  A reader
+ * therefore only needs the number of records and the version number.
+ *
+ * All of the methods are synchronized, so one table can be changed and
+ * read by several threads at once.
+ */
+public class OffHeapStudents {
+    // the fields of a student record
+    private static final int ID = 0;
+    private static final int NAMES = 1;         // the newest name record
+    private static final int REMOVED = 2;       // the version in which the
+                                                // student was removed, or 0
+
+    // the fields of a name record
+    private static final int LAST = 0;
+    private static final int FIRST = 1;
+    private static final int SINCE = 2;         // the version in which the
+                                                // names were given
+    private static final int PREVIOUS = 3;      // the name record that this
+                                                // one replaced, or -1
+
+    private OffHeapRecords students;
+    private OffHeapRecords names;
+    private OffHeapStrings strings;
+    private OffHeapIntMap index;                // id -> student record
+    private int version;                        // the current version
+
+    /**
+     * Constructs an OffHeapStudents object for a table that is initially
+     * empty.
+     */
+    public OffHeapStudents() {
+        students = new OffHeapRecords(3);
+        names = new OffHeapRecords(4);
+        strings = new OffHeapStrings();
+        index = new OffHeapIntMap();
+        version = 0;
+    }
+
+    /**
+     * add - adds a student with the specified information to the end of
+     * the table and returns its record number.  Throws an
+     * IllegalArgumentException if there is already a student with the
+     * specified id.
+     */
+    public synchronized int add(int id, String last, String first) {
+        if (index.containsKey(id))
+            throw new IllegalArgumentException("duplicate student id: " + id);
+
+        int nameRecord = addNames(last, first, -1);
+        int record = students.addRecord();
+        students.setField(record, ID, id);
+        students.setField(record, NAMES, nameRecord);
+        index.put(id, record);
+        return record;
+    }
+
+    /*
+     * addNames - private helper method that adds a name record for the
+     * current version, replacing the specified one, and returns its number.
+     */
+    private int addNames(String last, String first, int previous) {
+        int lastRef = strings.add(last);
+        int firstRef = strings.add(first);
+        int nameRecord = names.addRecord();
+        names.setField(nameRecord, LAST, lastRef);
+        names.setField(nameRecord, FIRST, firstRef);
+        names.setField(nameRecord, SINCE, version);
+        names.setField(nameRecord, PREVIOUS, previous);
+        return nameRecord;
+    }
+
+    /**
+     * rename - gives the student with the specified id the specified
+     * names, in a new version.  Returns false if there is no such student,
+     * and true otherwise.
+     */
+    public synchronized boolean rename(int id, String last, String first) {
+        int record = index.get(id);
+        if (record < 0)
+            return false;
+
+        version = Math.addExact(version, 1);
+        int nameRecord = addNames(last, first, students.getField(record, NAMES));
+        students.setField(record, NAMES, nameRecord);
+        return true;
+    }
+
+    /**
+     * remove - removes the student with the specified id, in a new
+     * version.  Returns false if there is no such student, and true
+     * otherwise.
+     */
+    public synchronized boolean remove(int id) {
+        int record = index.remove(id);
+        if (record < 0)
+            return false;
+
+        version = Math.addExact(version, 1);
+        students.setField(record, REMOVED, version);
+        return true;
+    }
+
+    /**
+     * recordOf - returns the number of the record for the student with the
+     * specified id, or -1 if there is no such student
+     */
+    public synchronized int recordOf(int id) {
+        return index.get(id);
+    }
+
+    /** size - returns the number of students in the table */
+    public synchronized int size() {
+        return index.size();
+    }
+
+    /**
+     * length - returns the number of records that have been added to the
+     * table, including the records of removed students
+     */
+    public synchronized int length() {
+        return students.length();
+    }
+
+    /** version - returns the current version number */
+    public synchronized int version() {
+        return version;
+    }
+
+    /**
+     * isPresent - returns true if the specified record had not been
+     * removed as of the specified version
+     */
+    public synchronized boolean isPresent(int record, int asOf) {
+        int removed = students.getField(record, REMOVED);
+        return removed == 0 || removed > asOf;
+    }
+
+    /** id - returns the student id in the specified record */
+    public synchronized int id(int record) {
+        return students.getField(record, ID);
+    }
+
+    /**
+     * lastName - returns the last name in the specified record as of the
+     * specified version
+     */
+    public synchronized String lastName(int record, int asOf) {
+        return strings.get(names.getField(namesAsOf(record, asOf), LAST));
+    }
+
+    /**
+     * firstName - returns the first name in the specified record as of
+     * the specified version
+     */
+    public synchronized String firstName(int record, int asOf) {
+        return strings.get(names.getField(namesAsOf(record, asOf), FIRST));
+    }
+
+    /*
+     * namesAsOf - private helper method that returns the newest name
+     * record for the specified student record that is from a version up
+     * to asOf.  The first name record is from the version in which the
+     * student was added, so it is always old enough for a reader that can
+     * see the student.
+     */
+    private int namesAsOf(int record, int asOf) {
+        int nameRecord = students.getField(record, NAMES);
+        while (names.getField(nameRecord, SINCE) > asOf
+                && names.getField(nameRecord, PREVIOUS) >= 0)
+            nameRecord = names.getField(nameRecord, PREVIOUS);
+        return nameRecord;
+    }
+}
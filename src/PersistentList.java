@@ -0,0 +1,349 @@
+/*
+ * PersistentList.java
+ *
+ * Computer Science E-22, Harvard University
+ */
+
+import java.util.*;
+
+/**
+ * A class that implements our simple List interface using a singly
+ * linked list whose nodes are never changed once they are created.
+ *
+ * Adding an item at position 0 just creates a new first node, so it
+ * takes O(1) time, as in LLList.  Any other change to position i copies
+ * the i nodes in front of it and links the copies to the unchanged rest
+ * of the list, which takes O(i) time.
+ *
+ * Because no node is ever changed, snapshot() takes O(1) time: the
+ * snapshot simply starts at the current first node.  The snapshot and
+ * the original then share all of their nodes, and a change to either
+ * one is not seen by the other.  In particular, one thread can read a
+ * snapshot while another thread changes the original, without any
+ * locking.
+ */
+public class PersistentList implements List {
+    // Inner class for a node.  Its fields are final, which also means
+    // that a node can safely be read by a thread other than the one that
+    // created it once it has been handed over.
+    private static class Node {
+        private final Object item;
+        private final Node next;
+
+        private Node(Object i, Node n) {
+            item = i;
+            next = n;
+        }
+    }
+
+    private static final Object[] NO_ITEMS = new Object[0];
+
+    private Node first;     // the first node, or null if the list is empty
+    private int length;     // # of items in the list
+    private int modCount;   // # of changes, for iterators
+
+    /**
+     * Constructs a PersistentList object for a list that is initially
+     * empty.
+     */
+    public PersistentList() {
+        this(null, 0);
+    }
+
+    /*
+     * private constructor for a list that starts with the specified node,
+     * used by snapshot()
+     */
+    private PersistentList(Node first, int length) {
+        this.first = first;
+        this.length = length;
+        modCount = 0;
+    }
+
+    /*
+     * getNode - private helper method that returns a reference to the
+     * ith node in the linked list, or null if i == length.
+     */
+    private Node getNode(int i) {
+        Node trav = first;
+        for (int k = 0; k < i; k++)
+            trav = trav.next;
+        return trav;
+    }
+
+    /*
+     * replace - private helper method that replaces the items in
+     * positions from, from+1, ..., to-1 with the specified items.  The
+     * nodes in front of position from are copied, and the copies are
+     * linked to the new nodes, which are linked to the node that was at
+     * position to.  Returns the node that was at position from.
+     */
+    private Node replace(int from, int to, Object[] items) {
+        // Collect the items in front of from, and find the nodes at
+        // positions from and to.
+        Object[] prefix = new Object[from];
+        Node trav = first;
+        for (int k = 0; k < from; k++) {
+            prefix[k] = trav.item;
+            trav = trav.next;
+        }
+        Node oldNode = trav;
+        for (int k = from; k < to; k++)
+            trav = trav.next;
+
+        // Build the new front of the list from the back.
+        Node rest = trav;
+        for (int k = items.length - 1; k >= 0; k--)
+            rest = new Node(items[k], rest);
+        for (int k = from - 1; k >= 0; k--)
+            rest = new Node(prefix[k], rest);
+
+        first = rest;
+        length += items.length - (to - from);
+        modCount++;
+        return oldNode;
+    }
+
+    /** getItem - returns the item at position i in the list */
+    public Object getItem(int i) {
+        if (i < 0 || i >= length)
+            throw new IndexOutOfBoundsException();
+        return getNode(i).item;
+    }
+
+    /**
+     * addItem - adds the specified item at position i in the list,
+     * shifting the items that are currently in positions i, i+1, i+2,
+     * etc. to the right by one.  Always returns true, because the list
+     * is never full.
+     */
+    public boolean addItem(Object item, int i) {
+        if (i < 0 || i > length)
+            throw new IndexOutOfBoundsException();
+
+        if (i == 0) {
+            first = new Node(item, first);
+            length++;
+            modCount++;
+        } else {
+            replace(i, i, new Object[] { item });
+        }
+        return true;
+    }
+
+    /**
+     * removeItem - removes the item at position i in the list,
+     * shifting the items that are currently in positions i+1, i+2,
+     * etc. to the left by one.  Returns a reference to the removed
+     * object.
+     */
+    public Object removeItem(int i) {
+        if (i < 0 || i >= length)
+            throw new IndexOutOfBoundsException();
+        return replace(i, i + 1, NO_ITEMS).item;
+    }
+
+    /**
+     * insertAll - adds the items in the specified array at positions
+     * at, at+1, ... in the list.  Always returns true, because the list
+     * is never full.  This takes O(at + items.length) time.
+     */
+    public boolean insertAll(Object[] items, int at) {
+        if (at < 0 || at > length)
+            throw new IndexOutOfBoundsException();
+        if (items.length > 0)
+            replace(at, at, items);
+        return true;
+    }
+
+    /**
+     * removeRange - removes the items in positions from, from+1, ...,
+     * to-1 in the list.  This takes O(to) time.
+     */
+    public void removeRange(int from, int to) {
+        if (from < 0 || to > length || from > to)
+            throw new IndexOutOfBoundsException();
+        if (from < to)
+            replace(from, to, NO_ITEMS);
+    }
+
+    /** length - returns the number of items in the list */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * isFull - always returns false, because the linked list can
+     * grow indefinitely and thus the list is never full.
+     */
+    public boolean isFull() {
+        return false;
+    }
+
+    /**
+     * snapshot - returns a list with the items that are currently in
+     * this list.  It shares this list's nodes, so this takes O(1) time,
+     * and later changes to either list do not affect the other.
+     */
+    public List snapshot() {
+        return new PersistentList(first, length);
+    }
+
+    /**
+     * toString - converts the list into a String of the form
+     * {item0, item1, ...}
+     */
+    public String toString() {
+        String str = "{";
+
+        Node trav = first;
+        while (trav != null) {
+            str = str + trav.item;
+            if (trav.next != null)
+                str = str + ", ";
+            trav = trav.next;
+        }
+
+        str = str + "}";
+        return str;
+    }
+
+    /**
+     * iterator - returns an iterator for this list
+     */
+    public ListIterator<Object> iterator() {
+        return new PersistentListIterator();
+    }
+
+    /*
+     *** private inner class for an iterator over a PersistentList ***
+     *
+     * The iterator keeps a reference to the node after the cursor, so
+     * next() takes constant time.  previous() has to find the node before
+     * that one from the front of the list.  add(), remove() and set()
+     * change the list by copying the nodes in front of the cursor, so
+     * they take time proportional to the cursor's position; the node
+     * after the cursor is not copied, so the iterator can keep using it.
+     */
+    private class PersistentListIterator implements ListIterator<Object> {
+        private Node nextNode;          // the node after the cursor
+        private int nextIndex;          // its position
+        private int lastIndex;          // position of the most recently
+                                        // visited item, or -1
+        private int expectedModCount;
+
+        public PersistentListIterator() {
+            nextNode = first;
+            nextIndex = 0;
+            lastIndex = -1;
+            expectedModCount = modCount;
+        }
+
+        /*
+         * checkForComodification - throws an exception if the list was
+         * changed other than through this iterator.
+         */
+        private void checkForComodification() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+        }
+
+        /**
+         * hasNext - does the iterator have additional items to visit?
+         */
+        public boolean hasNext() {
+            return (nextIndex < length);
+        }
+
+        /**
+         * next - returns a reference to the next Object in the iteration
+         */
+        public Object next() {
+            checkForComodification();
+            if (nextNode == null)
+                throw new NoSuchElementException();
+
+            Object item = nextNode.item;
+            nextNode = nextNode.next;
+            lastIndex = nextIndex;
+            nextIndex++;
+            return item;
+        }
+
+        /**
+         * hasPrevious - does the iterator have items before the cursor?
+         */
+        public boolean hasPrevious() {
+            return (nextIndex > 0);
+        }
+
+        /**
+         * previous - returns a reference to the previous Object in the
+         * iteration and moves the cursor back by one
+         */
+        public Object previous() {
+            checkForComodification();
+            if (nextIndex == 0)
+                throw new NoSuchElementException();
+
+            nextIndex--;
+            nextNode = getNode(nextIndex);
+            lastIndex = nextIndex;
+            return nextNode.item;
+        }
+
+        public int nextIndex() {
+            return nextIndex;
+        }
+
+        public int previousIndex() {
+            return nextIndex - 1;
+        }
+
+        /**
+         * remove - removes the item most recently returned by next()
+         * or previous()
+         */
+        public void remove() {
+            if (lastIndex < 0)
+                throw new IllegalStateException();
+            checkForComodification();
+
+            Node removed = replace(lastIndex, lastIndex + 1, NO_ITEMS);
+            if (lastIndex < nextIndex)          // last call was next()
+                nextIndex--;
+            else
+                nextNode = removed.next;
+            lastIndex = -1;
+            expectedModCount = modCount;
+        }
+
+        /**
+         * set - replaces the item most recently returned by next()
+         * or previous()
+         */
+        public void set(Object item) {
+            if (lastIndex < 0)
+                throw new IllegalStateException();
+            checkForComodification();
+
+            replace(lastIndex, lastIndex + 1, new Object[] { item });
+            if (lastIndex == nextIndex)         // last call was previous()
+                nextNode = getNode(nextIndex);
+            expectedModCount = modCount;
+        }
+
+        /**
+         * add - inserts the specified item immediately before the
+         * cursor
+         */
+        public void add(Object item) {
+            checkForComodification();
+
+            replace(nextIndex, nextIndex, new Object[] { item });
+            nextIndex++;
+            lastIndex = -1;
+            expectedModCount = modCount;
+        }
+    }
+}
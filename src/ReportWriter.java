@@ -0,0 +1,204 @@
+/*
+ * ReportWriter.java
+ *
+ * Computer Science E-22, Harvard University
+ */
+
+import java.io.*;
+import java.math.*;
+
+/**
+ * A class for writing tab-separated reports to a Writer.
+ *
+ * Characters are collected in a large buffer and handed to the Writer
+ * in big chunks, and ints and fixed-point numbers are converted to
+ * digits directly in the buffer instead of going through a format
+ * string.  This avoids the per-row cost of printf() and of a
+ * synchronized, autoflushing PrintStream, so a report can be written to
+ * a file or pipe as fast as the device allows.
+ *
+ * Nothing reaches the Writer until the buffer fills up or flush() is
+ * called.
+ */
+public class ReportWriter {
+    private static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+    private static final long[] POWERS_OF_TEN = {
+        1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L,
+        100000000L, 1000000000L
+    };
+
+    private Writer out;
+    private char[] buffer;
+    private int used;          // # of characters in the buffer
+
+    /**
+     * Constructs a ReportWriter that writes to the specified Writer
+     * through a 64K-character buffer.
+     */
+    public ReportWriter(Writer out) {
+        this(out, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Constructs a ReportWriter that writes to the specified Writer
+     * through a buffer of the specified size.
+     */
+    public ReportWriter(Writer out, int bufferSize) {
+        if (bufferSize < 16)
+            throw new IllegalArgumentException("buffer too small: "
+                                               + bufferSize);
+        this.out = out;
+        buffer = new char[bufferSize];
+        used = 0;
+    }
+
+    /*
+     * makeRoom - private helper method that empties the buffer into the
+     * Writer if it has fewer than n free characters.
+     */
+    private void makeRoom(int n) throws IOException {
+        if (buffer.length - used < n) {
+            out.write(buffer, 0, used);
+            used = 0;
+        }
+    }
+
+    /**
+     * write - writes the specified string, or "null" if it is null
+     */
+    public void write(String s) throws IOException {
+        if (s == null)
+            s = "null";
+
+        int start = 0;
+        int len = s.length();
+        while (start < len) {
+            makeRoom(1);
+            int n = Math.min(len - start, buffer.length - used);
+            s.getChars(start, start + n, buffer, used);
+            used += n;
+            start += n;
+        }
+    }
+
+    /**
+     * write - writes the specified character
+     */
+    public void write(char c) throws IOException {
+        makeRoom(1);
+        buffer[used] = c;
+        used++;
+    }
+
+    /**
+     * writeInt - writes the specified int in decimal, as "%d" would
+     */
+    public void writeInt(int value) throws IOException {
+        makeRoom(11);    // enough for "-2147483648"
+
+        if (value == Integer.MIN_VALUE) {
+            write("-2147483648");
+            return;
+        }
+        if (value < 0) {
+            buffer[used] = '-';
+            used++;
+            value = -value;
+        }
+
+        // Count the digits, then fill them in from the right.
+        int digits = 1;
+        for (int v = value; v >= 10; v /= 10)
+            digits++;
+        int pos = used + digits;
+        do {
+            pos--;
+            buffer[pos] = (char) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        used += digits;
+    }
+
+    /**
+     * writeFixed - writes the specified double with the specified number
+     * of digits (0 to 9) after the decimal point, as "%.<decimals>f" would
+     */
+    public void writeFixed(double value, int decimals) throws IOException {
+        if (decimals < 0 || decimals >= POWERS_OF_TEN.length)
+            throw new IllegalArgumentException("bad number of decimals: "
+                                               + decimals);
+
+        long scale = POWERS_OF_TEN[decimals];
+        double scaled = Math.abs(value) * scale;
+        if (Double.isNaN(scaled) || scaled >= 1e15) {
+            write(String.format("%." + decimals + "f", value));
+            return;
+        }
+
+        // Like "%f", round the shortest decimal form of the value half
+        // up.  The scaled double is close enough to decide, except when
+        // it is within rounding error of a tie.
+        long units = (long) scaled;
+        double fraction = scaled - units;
+        if (Math.abs(fraction - 0.5) < 1e-6) {
+            units = new BigDecimal(Double.toString(Math.abs(value)))
+                        .setScale(decimals, RoundingMode.HALF_UP)
+                        .unscaledValue().longValue();
+        } else if (fraction > 0.5) {
+            units++;
+        }
+
+        makeRoom(decimals + 21);
+        if (Double.doubleToRawLongBits(value) < 0) {
+            buffer[used] = '-';
+            used++;
+        }
+
+        // Fill in the digits from the right, putting the decimal point
+        // after the first decimals of them.
+        int digits = decimals + 1;
+        for (long u = units / scale; u >= 10; u /= 10)
+            digits++;
+        int length = (decimals > 0) ? digits + 1 : digits;
+        int pos = used + length;
+        for (int i = 0; i < digits; i++) {
+            if (i == decimals && decimals > 0) {
+                pos--;
+                buffer[pos] = '.';
+            }
+            pos--;
+            buffer[pos] = (char) ('0' + units % 10);
+            units /= 10;
+        }
+        used += length;
+    }
+
+    /** tab - writes a tab character */
+    public void tab() throws IOException {
+        write('\t');
+    }
+
+    /** newline - ends a row of the report with a '\n' character */
+    public void newline() throws IOException {
+        write('\n');
+    }
+
+    /**
+     * println - writes the specified string followed by the platform's
+     * line separator, as System.out.println() would
+     */
+    public void println(String s) throws IOException {
+        write(s);
+        write(LINE_SEPARATOR);
+    }
+
+    /**
+     * flush - writes any buffered characters to the Writer and flushes it
+     */
+    public void flush() throws IOException {
+        out.write(buffer, 0, used);
+        used = 0;
+        out.flush();
+    }
+}
@@ -0,0 +1,359 @@
+/*
+ * SkipList.java
+ *
+ * Computer Science E-22, Harvard University
+ */
+
+import java.util.*;
+
+/**
+ * A class that implements our simple List interface using an indexable
+ * skip list.
+ *
+ * Every node is part of the ordinary linked list at level 0, and a
+ * randomly chosen half of the nodes at each level are also linked
+ * together at the level above it.  Each link records its width -- the
+ * number of positions it skips over -- so that getNode() can find
+ * position i by following long links near the top and shorter ones near
+ * the bottom.  As a result, getItem(), addItem() and removeItem() all
+ * take O(log n) expected time at any position.
+ *
+ * A link that is null is treated as if it led to a node at position
+ * length, just past the end of the list, and its width is kept up to
+ * date on that basis.
+ */
+public class SkipList implements List {
+    private static final int MAX_LEVEL = 32;
+
+    // Inner class for a node.  We use an inner class so that the SkipList
+    // methods can access the instance variables of the nodes.
+    private class Node {
+        private Object item;
+        private Node[] next;     // next[lvl] is the next node at level lvl
+        private int[] width;     // width[lvl] is the # of positions it skips
+
+        private Node(Object i, int height) {
+            item = i;
+            next = new Node[height];
+            width = new int[height];
+        }
+    }
+
+    private Node head;         // dummy head node, at position -1
+    private int levels;        // # of levels currently in use
+    private int length;        // # of items in the list
+    private int modCount;      // # of structural changes, for iterators
+    private Random random;
+
+    // scratch arrays filled in by findPredecessors()
+    private Node[] update;
+    private int[] updatePos;
+
+    /**
+     * Constructs a SkipList object for a list that is initially empty.
+     */
+    public SkipList() {
+        head = new Node(null, MAX_LEVEL);
+        Arrays.fill(head.width, 1);
+        levels = 1;
+        length = 0;
+        random = new Random();
+        update = new Node[MAX_LEVEL];
+        updatePos = new int[MAX_LEVEL];
+    }
+
+    /*
+     * randomHeight - private helper method that chooses the number of
+     * levels for a new node: 1 with probability 1/2, 2 with probability
+     * 1/4, and so on.
+     */
+    private int randomHeight() {
+        int height = 1;
+        while (height < MAX_LEVEL && random.nextBoolean())
+            height++;
+        return height;
+    }
+
+    /*
+     * getNode - private helper method that returns a reference to the
+     * ith node in the list.  It assumes that the value of the parameter
+     * is valid.  If i == -1, it returns a reference to the dummy head
+     * node.
+     */
+    private Node getNode(int i) {
+        Node trav = head;
+        int travPos = -1;
+        for (int lvl = levels - 1; lvl >= 0; lvl--) {
+            while (trav.next[lvl] != null && travPos + trav.width[lvl] <= i) {
+                travPos += trav.width[lvl];
+                trav = trav.next[lvl];
+            }
+        }
+        return trav;
+    }
+
+    /*
+     * findPredecessors - private helper method that stores in update[lvl]
+     * the last node at each level whose position is less than i, and in
+     * updatePos[lvl] the position of that node.
+     */
+    private void findPredecessors(int i) {
+        Node trav = head;
+        int travPos = -1;
+        for (int lvl = levels - 1; lvl >= 0; lvl--) {
+            while (trav.next[lvl] != null && travPos + trav.width[lvl] < i) {
+                travPos += trav.width[lvl];
+                trav = trav.next[lvl];
+            }
+            update[lvl] = trav;
+            updatePos[lvl] = travPos;
+        }
+    }
+
+    /** getItem - returns the item at position i in the list */
+    public Object getItem(int i) {
+        if (i < 0 || i >= length)
+            throw new IndexOutOfBoundsException();
+        return getNode(i).item;
+    }
+
+    /**
+     * addItem - adds the specified item at position i in the list,
+     * shifting the items that are currently in positions i, i+1, i+2,
+     * etc. to the right by one.  Always returns true, because the list
+     * is never full.
+     */
+    public boolean addItem(Object item, int i) {
+        if (i < 0 || i > length)
+            throw new IndexOutOfBoundsException();
+
+        findPredecessors(i);
+        int height = randomHeight();
+        for (int lvl = levels; lvl < height; lvl++) {
+            update[lvl] = head;
+            updatePos[lvl] = -1;
+            head.next[lvl] = null;
+            head.width[lvl] = length + 1;
+        }
+        if (height > levels)
+            levels = height;
+
+        Node newNode = new Node(item, height);
+        for (int lvl = 0; lvl < levels; lvl++) {
+            Node pred = update[lvl];
+            if (lvl < height) {
+                // The node that pred linked to moves from position
+                // updatePos + width to one position further right.
+                int oldTargetPos = updatePos[lvl] + pred.width[lvl];
+                newNode.next[lvl] = pred.next[lvl];
+                newNode.width[lvl] = oldTargetPos + 1 - i;
+                pred.next[lvl] = newNode;
+                pred.width[lvl] = i - updatePos[lvl];
+            } else {
+                pred.width[lvl]++;
+            }
+        }
+
+        length++;
+        modCount++;
+        return true;
+    }
+
+    /**
+     * removeItem - removes the item at position i in the list,
+     * shifting the items that are currently in positions i+1, i+2,
+     * etc. to the left by one.  Returns a reference to the removed
+     * object.
+     */
+    public Object removeItem(int i) {
+        if (i < 0 || i >= length)
+            throw new IndexOutOfBoundsException();
+
+        findPredecessors(i);
+        Node removedNode = update[0].next[0];
+        for (int lvl = 0; lvl < levels; lvl++) {
+            Node pred = update[lvl];
+            if (pred.next[lvl] == removedNode) {
+                pred.width[lvl] += removedNode.width[lvl] - 1;
+                pred.next[lvl] = removedNode.next[lvl];
+            } else {
+                pred.width[lvl]--;
+            }
+        }
+        while (levels > 1 && head.next[levels - 1] == null)
+            levels--;
+
+        length--;
+        modCount++;
+        return removedNode.item;
+    }
+
+    /** length - returns the number of items in the list */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * isFull - always returns false, because the skip list can
+     * grow indefinitely and thus the list is never full.
+     */
+    public boolean isFull() {
+        return false;
+    }
+
+    /**
+     * toString - converts the list into a String of the form
+     * {item0, item1, ...}
+     */
+    public String toString() {
+        StringBuilder str = new StringBuilder("{");
+
+        Node trav = head.next[0];    // skip over the dummy head node
+        while (trav != null) {
+            str.append(trav.item);
+            if (trav.next[0] != null)
+                str.append(", ");
+            trav = trav.next[0];
+        }
+
+        str.append("}");
+        return str.toString();
+    }
+
+    /**
+     * iterator - returns an iterator for this list
+     */
+    public ListIterator<Object> iterator() {
+        return new SkipListIterator();
+    }
+
+    /*
+     *** private inner class for an iterator over a SkipList ***
+     *
+     * next() follows the level-0 links and takes constant time.  The
+     * other operations use getNode(), addItem() or removeItem() and take
+     * O(log n) expected time.
+     */
+    private class SkipListIterator implements ListIterator<Object> {
+        private Node prevNode;          // the node before the cursor
+        private int nextIndex;          // index of the node after it
+        private Node lastVisitedNode;   // the most recently visited node
+        private int lastVisited;        // its index, or -1 if none
+        private int expectedModCount;
+
+        public SkipListIterator() {
+            prevNode = head;
+            nextIndex = 0;
+            lastVisitedNode = null;
+            lastVisited = -1;
+            expectedModCount = modCount;
+        }
+
+        /*
+         * checkForComodification - throws an exception if the list was
+         * structurally modified other than through this iterator.
+         */
+        private void checkForComodification() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+        }
+
+        /**
+         * hasNext - does the iterator have additional items to visit?
+         */
+        public boolean hasNext() {
+            return (nextIndex < length);
+        }
+
+        /**
+         * next - returns a reference to the next Object in the iteration
+         */
+        public Object next() {
+            checkForComodification();
+            if (nextIndex >= length)
+                throw new NoSuchElementException();
+
+            prevNode = prevNode.next[0];
+            lastVisitedNode = prevNode;
+            lastVisited = nextIndex;
+            nextIndex++;
+            return prevNode.item;
+        }
+
+        /**
+         * hasPrevious - does the iterator have items before the cursor?
+         */
+        public boolean hasPrevious() {
+            return (nextIndex > 0);
+        }
+
+        /**
+         * previous - returns a reference to the previous Object in the
+         * iteration and moves the cursor back by one
+         */
+        public Object previous() {
+            checkForComodification();
+            if (nextIndex == 0)
+                throw new NoSuchElementException();
+
+            lastVisitedNode = prevNode;
+            nextIndex--;
+            lastVisited = nextIndex;
+            prevNode = getNode(nextIndex - 1);
+            return lastVisitedNode.item;
+        }
+
+        public int nextIndex() {
+            return nextIndex;
+        }
+
+        public int previousIndex() {
+            return nextIndex - 1;
+        }
+
+        /**
+         * remove - removes the item most recently returned by next()
+         * or previous()
+         */
+        public void remove() {
+            if (lastVisited < 0)
+                throw new IllegalStateException();
+            checkForComodification();
+
+            removeItem(lastVisited);
+            if (lastVisited < nextIndex)
+                nextIndex--;
+            prevNode = getNode(nextIndex - 1);
+            lastVisitedNode = null;
+            lastVisited = -1;
+            expectedModCount = modCount;
+        }
+
+        /**
+         * set - replaces the item most recently returned by next()
+         * or previous()
+         */
+        public void set(Object item) {
+            if (lastVisited < 0)
+                throw new IllegalStateException();
+            checkForComodification();
+
+            lastVisitedNode.item = item;
+        }
+
+        /**
+         * add - inserts the specified item immediately before the
+         * cursor
+         */
+        public void add(Object item) {
+            checkForComodification();
+
+            addItem(item, nextIndex);
+            nextIndex++;
+            prevNode = getNode(nextIndex - 1);
+            lastVisitedNode = null;
+            lastVisited = -1;
+            expectedModCount = modCount;
+        }
+    }
+}
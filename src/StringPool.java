@@ -0,0 +1,98 @@
+/*
+ * StringPool.java
+ *
+ * Computer Science E-22, Harvard University
+ */
+
+import java.util.*;
+
+/**
+ * A pool of canonical Strings, used to store each distinct value of a
+ * field such as an assignment name only once, however many records
+ * contain it.
+ *
+ * intern() returns the pooled String that is equal to its argument,
+ * adding the argument to the pool if there is none, so two interned
+ * Strings are equal exactly when they are the same object and can be
+ * compared with ==.  Each pooled String also has a small integer code,
+ * assigned in the order in which the Strings were added and starting
+ * from 0, so a table can store the code instead of a reference, and
+ * compare codes instead of Strings.  Strings are never removed from the
+ * pool, so a code always stands for the same String.
+ *
+ * The pool may be shared by several threads.  intern(), code() and
+ * codeOf() are synchronized; get() is not, because a code that a thread
+ * has obtained always refers to an entry that the thread can see.
+ */
+public class StringPool {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private HashMap<String, Integer> codes;     // String -> code
+    private volatile String[] values;           // code -> String
+    private int size;                           // # of Strings in the pool
+
+    /**
+     * Constructs a StringPool object for a pool that is initially empty.
+     */
+    public StringPool() {
+        codes = new HashMap<String, Integer>();
+        values = new String[DEFAULT_CAPACITY];
+        size = 0;
+    }
+
+    /**
+     * intern - returns the pooled String that is equal to s, adding s to
+     * the pool if it is not already there.  Returns null if s is null.
+     */
+    public synchronized String intern(String s) {
+        if (s == null)
+            return null;
+        int code = code(s);
+        return values[code];
+    }
+
+    /**
+     * code - returns the code for the specified String, adding it to the
+     * pool if it is not already there
+     */
+    public synchronized int code(String s) {
+        if (s == null)
+            throw new IllegalArgumentException("null strings are not pooled");
+
+        Integer code = codes.get(s);
+        if (code != null)
+            return code;
+
+        String[] current = values;
+        if (size == current.length)
+            current = Arrays.copyOf(current, 2 * size);
+        current[size] = s;
+        values = current;
+        codes.put(s, size);
+        return size++;
+    }
+
+    /**
+     * codeOf - returns the code for the specified String, or -1 if it is
+     * not in the pool.  Unlike code(), this never adds to the pool.
+     */
+    public synchronized int codeOf(String s) {
+        Integer code = codes.get(s);
+        return (code == null) ? -1 : code;
+    }
+
+    /**
+     * get - returns the pooled String with the specified code
+     */
+    public String get(int code) {
+        String[] current = values;
+        if (code < 0 || code >= current.length || current[code] == null)
+            throw new IndexOutOfBoundsException();
+        return current[code];
+    }
+
+    /** size - returns the number of Strings in the pool */
+    public synchronized int size() {
+        return size;
+    }
+}
@@ -0,0 +1,426 @@
+/*
+ * UnrolledList.java
+ *
+ * Computer Science E-22, Harvard University
+ */
+
+import java.util.*;
+
+/**
+ * A class that implements our simple List interface using an unrolled
+ * linked list.  Each node holds a small array of up to nodeCapacity
+ * items instead of a single item, so the list needs one node (and one
+ * pointer to follow) per block of items rather than per item.
+ *
+ * Finding position i takes O(n / nodeCapacity) time, and inserting or
+ * removing there only shifts the items within one node.  A full node is
+ * split in half before an insertion, and a node that becomes less than
+ * half full is merged with its successor when their items fit in one
+ * node, which keeps the nodes reasonably full.
+ */
+public class UnrolledList implements List {
+    private static final int DEFAULT_NODE_CAPACITY = 32;
+
+    // Inner class for a node.  We use an inner class so that the
+    // UnrolledList methods can access the instance variables of the nodes.
+    private class Node {
+        private Object[] items;
+        private int count;       // # of items in use, stored in items[0..count-1]
+        private Node prev;
+        private Node next;
+
+        private Node() {
+            items = new Object[nodeCapacity];
+            count = 0;
+        }
+    }
+
+    private final int nodeCapacity;    // maximum # of items per node
+    private Node first;                // first node, or null if empty
+    private Node last;                 // last node, or null if empty
+    private int length;                // # of items in the list
+    private int modCount;              // # of structural changes
+
+    /*
+     * Fields set by locate() to describe where a position was found.
+     */
+    private Node foundNode;
+    private int foundOffset;
+
+    /**
+     * Constructs an UnrolledList object for a list that is initially
+     * empty and whose nodes hold up to 32 items each.
+     */
+    public UnrolledList() {
+        this(DEFAULT_NODE_CAPACITY);
+    }
+
+    /**
+     * Constructs an UnrolledList object for a list that is initially
+     * empty and whose nodes hold up to nodeCapacity items each.
+     */
+    public UnrolledList(int nodeCapacity) {
+        if (nodeCapacity < 2)
+            throw new IllegalArgumentException("node capacity must be "
+                                               + "at least 2");
+        this.nodeCapacity = nodeCapacity;
+        first = null;
+        last = null;
+        length = 0;
+    }
+
+    /*
+     * locate - private helper method that finds the node containing
+     * position i and stores it in foundNode, along with the offset of
+     * position i within that node in foundOffset.  It assumes that
+     * 0 <= i <= length and that the list is not empty.
+     *
+     * If i == length, or if i falls at the boundary between two nodes
+     * and forInsert is true, the position is reported as one past the
+     * last item of the earlier node.  The traversal starts from
+     * whichever end of the list is closer.
+     */
+    private void locate(int i, boolean forInsert) {
+        if (i < length / 2) {
+            Node trav = first;
+            while (i > trav.count || (i == trav.count && !forInsert)) {
+                i -= trav.count;
+                trav = trav.next;
+            }
+            foundNode = trav;
+            foundOffset = i;
+        } else {
+            Node trav = last;
+            int start = length - trav.count;    // position of trav.items[0]
+            while (i < start || (i == start && forInsert && trav.prev != null)) {
+                trav = trav.prev;
+                start -= trav.count;
+            }
+            foundNode = trav;
+            foundOffset = i - start;
+        }
+    }
+
+    /*
+     * linkAfter - private helper method that inserts newNode after
+     * node, or at the front of the list if node is null.
+     */
+    private void linkAfter(Node node, Node newNode) {
+        newNode.prev = node;
+        newNode.next = (node == null) ? first : node.next;
+        if (newNode.next != null)
+            newNode.next.prev = newNode;
+        else
+            last = newNode;
+        if (node != null)
+            node.next = newNode;
+        else
+            first = newNode;
+    }
+
+    /*
+     * unlink - private helper method that removes the specified node
+     * from the chain of nodes.
+     */
+    private void unlink(Node node) {
+        if (node.prev != null)
+            node.prev.next = node.next;
+        else
+            first = node.next;
+        if (node.next != null)
+            node.next.prev = node.prev;
+        else
+            last = node.prev;
+    }
+
+    /** getItem - returns the item at position i in the list */
+    public Object getItem(int i) {
+        if (i < 0 || i >= length)
+            throw new IndexOutOfBoundsException();
+        locate(i, false);
+        return foundNode.items[foundOffset];
+    }
+
+    /**
+     * addItem - adds the specified item at position i in the list,
+     * shifting the items that are currently in positions i, i+1, i+2,
+     * etc. to the right by one.  Always returns true, because the list
+     * is never full.
+     */
+    public boolean addItem(Object item, int i) {
+        if (i < 0 || i > length)
+            throw new IndexOutOfBoundsException();
+
+        if (first == null) {
+            linkAfter(null, new Node());
+            foundNode = first;
+            foundOffset = 0;
+        } else {
+            locate(i, true);
+        }
+
+        Node node = foundNode;
+        int offset = foundOffset;
+        if (node.count == nodeCapacity) {
+            // Split the full node, moving its second half into a new node.
+            Node newNode = new Node();
+            int half = nodeCapacity / 2;
+            newNode.count = nodeCapacity - half;
+            System.arraycopy(node.items, half, newNode.items, 0, newNode.count);
+            Arrays.fill(node.items, half, nodeCapacity, null);
+            node.count = half;
+            linkAfter(node, newNode);
+
+            if (offset > half) {
+                node = newNode;
+                offset -= half;
+            }
+        }
+
+        System.arraycopy(node.items, offset, node.items, offset + 1,
+                         node.count - offset);
+        node.items[offset] = item;
+        node.count++;
+
+        length++;
+        modCount++;
+        return true;
+    }
+
+    /**
+     * removeItem - removes the item at position i in the list,
+     * shifting the items that are currently in positions i+1, i+2,
+     * etc. to the left by one.  Returns a reference to the removed
+     * object.
+     */
+    public Object removeItem(int i) {
+        if (i < 0 || i >= length)
+            throw new IndexOutOfBoundsException();
+
+        locate(i, false);
+        Node node = foundNode;
+        int offset = foundOffset;
+
+        Object removed = node.items[offset];
+        System.arraycopy(node.items, offset + 1, node.items, offset,
+                         node.count - offset - 1);
+        node.count--;
+        node.items[node.count] = null;
+
+        if (node.count == 0) {
+            unlink(node);
+        } else if (node.count < nodeCapacity / 2 && node.next != null
+                   && node.count + node.next.count <= nodeCapacity) {
+            // Merge the successor into this node.
+            Node next = node.next;
+            System.arraycopy(next.items, 0, node.items, node.count, next.count);
+            node.count += next.count;
+            unlink(next);
+        }
+
+        length--;
+        modCount++;
+        return removed;
+    }
+
+    /** length - returns the number of items in the list */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * isFull - always returns false, because the list can grow
+     * indefinitely and thus the list is never full.
+     */
+    public boolean isFull() {
+        return false;
+    }
+
+    /**
+     * toString - converts the list into a String of the form
+     * {item0, item1, ...}
+     */
+    public String toString() {
+        StringBuilder str = new StringBuilder("{");
+
+        for (Node trav = first; trav != null; trav = trav.next) {
+            for (int j = 0; j < trav.count; j++) {
+                str.append(trav.items[j]);
+                if (j < trav.count - 1 || trav.next != null)
+                    str.append(", ");
+            }
+        }
+
+        str.append("}");
+        return str.toString();
+    }
+
+    /**
+     * iterator - returns an iterator for this list
+     */
+    public ListIterator<Object> iterator() {
+        return new UnrolledListIterator();
+    }
+
+    /*
+     *** private inner class for an iterator over an UnrolledList ***
+     *
+     * The iterator walks the items within a node using an offset, so
+     * next(), previous() and set() take constant time.  add() and
+     * remove() go through addItem() and removeItem(), because they may
+     * split or merge nodes, and then find the cursor again.
+     */
+    private class UnrolledListIterator implements ListIterator<Object> {
+        private Node node;          // node holding the next item, or null
+        private int offset;         // offset of the next item in node
+        private int nextIndex;      // index of the next item
+        private int lastVisited;    // index of the most recently visited
+                                    // item, or -1 if none
+        private Node lastNode;      // node and offset of that item
+        private int lastOffset;
+        private int expectedModCount;
+
+        public UnrolledListIterator() {
+            node = first;
+            offset = 0;
+            nextIndex = 0;
+            lastVisited = -1;
+            expectedModCount = modCount;
+        }
+
+        /*
+         * checkForComodification - throws an exception if the list was
+         * structurally modified other than through this iterator.
+         */
+        private void checkForComodification() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+        }
+
+        /*
+         * seek - positions the cursor before the item at nextIndex,
+         * after the list has been changed through this iterator.
+         */
+        private void seek() {
+            if (nextIndex == length) {
+                node = null;
+                offset = 0;
+            } else {
+                locate(nextIndex, false);
+                node = foundNode;
+                offset = foundOffset;
+            }
+        }
+
+        /**
+         * hasNext - does the iterator have additional items to visit?
+         */
+        public boolean hasNext() {
+            return (nextIndex < length);
+        }
+
+        /**
+         * next - returns a reference to the next Object in the iteration
+         */
+        public Object next() {
+            checkForComodification();
+            if (nextIndex >= length)
+                throw new NoSuchElementException();
+
+            if (offset == node.count) {
+                node = node.next;
+                offset = 0;
+            }
+            Object item = node.items[offset];
+            lastNode = node;
+            lastOffset = offset;
+            offset++;
+            lastVisited = nextIndex;
+            nextIndex++;
+            return item;
+        }
+
+        /**
+         * hasPrevious - does the iterator have items before the cursor?
+         */
+        public boolean hasPrevious() {
+            return (nextIndex > 0);
+        }
+
+        /**
+         * previous - returns a reference to the previous Object in the
+         * iteration and moves the cursor back by one
+         */
+        public Object previous() {
+            checkForComodification();
+            if (nextIndex == 0)
+                throw new NoSuchElementException();
+
+            if (node == null) {
+                node = last;
+                offset = last.count;
+            }
+            if (offset == 0) {
+                node = node.prev;
+                offset = node.count;
+            }
+            offset--;
+            nextIndex--;
+            lastVisited = nextIndex;
+            lastNode = node;
+            lastOffset = offset;
+            return node.items[offset];
+        }
+
+        public int nextIndex() {
+            return nextIndex;
+        }
+
+        public int previousIndex() {
+            return nextIndex - 1;
+        }
+
+        /**
+         * remove - removes the item most recently returned by next()
+         * or previous()
+         */
+        public void remove() {
+            if (lastVisited < 0)
+                throw new IllegalStateException();
+            checkForComodification();
+
+            removeItem(lastVisited);
+            if (lastVisited < nextIndex)
+                nextIndex--;
+            lastVisited = -1;
+            seek();
+            expectedModCount = modCount;
+        }
+
+        /**
+         * set - replaces the item most recently returned by next()
+         * or previous()
+         */
+        public void set(Object item) {
+            if (lastVisited < 0)
+                throw new IllegalStateException();
+            checkForComodification();
+
+            lastNode.items[lastOffset] = item;
+        }
+
+        /**
+         * add - inserts the specified item immediately before the
+         * cursor
+         */
+        public void add(Object item) {
+            checkForComodification();
+
+            addItem(item, nextIndex);
+            nextIndex++;
+            lastVisited = -1;
+            seek();
+            expectedModCount = modCount;
+        }
+    }
+}